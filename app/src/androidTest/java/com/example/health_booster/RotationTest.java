@@ -0,0 +1,105 @@
+package com.example.health_booster;
+
+import android.Manifest;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.rule.GrantPermissionRule;
+
+import com.example.health_booster.engine.GameTask;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rotates the tracking activity and measures how long the new one takes to show the map again
+ * and how many calls it makes into Play Services on the way. The location request is left alone,
+ * no fused location calls, but the MapView is a view of the destroyed activity and is rebuilt
+ * with its onCreate() and getMapAsync() calls every time.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RotationTest {
+
+    private static final String TAG = "RotationTest";
+    private static final int ROTATIONS = 5;
+    private static final long TIMEOUT_MILLIS = 20000;
+    //MapView.onCreate() and getMapAsync() of the new activity's map
+    private static final long MAP_CALLS_PER_ROTATION = 2;
+
+    @Rule
+    public GrantPermissionRule permissions = GrantPermissionRule.grant(Manifest.permission.ACCESS_FINE_LOCATION);
+
+    private interface Condition {
+        boolean isMet(MainActivity activity);
+    }
+
+    private static void await(ActivityScenario<MainActivity> scenario, Condition condition) throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        final boolean[] met = new boolean[1];
+        while (SystemClock.elapsedRealtime() < deadline)
+        {
+            scenario.onActivity(activity -> met[0] = condition.isMet(activity));
+            if (met[0])
+            {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Timed out");
+    }
+
+    private static TrackingService getService(ActivityScenario<MainActivity> scenario) {
+        AtomicReference<TrackingService> service = new AtomicReference<>();
+        scenario.onActivity(activity -> service.set(activity.getTrackingService()));
+        return service.get();
+    }
+
+    @Test
+    public void rotationKeepsTheTaskAndTheLocationRequest() throws InterruptedException {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class))
+        {
+            await(scenario, activity -> activity.getGoogleMap() != null && activity.getTrackingService() != null
+                    && activity.getTrackingService().isRequestingLocationUpdates());
+            TrackingService service = getService(scenario);
+            Location location = new Location("test");
+            location.setLatitude(22.3);
+            location.setLongitude(114.17);
+            location.setAccuracy(5);
+            location.setTime(System.currentTimeMillis());
+            service.onLocation(location);
+            await(scenario, activity -> activity.getGameLoop().getSnapshot().getTask() != null);
+            GameTask task = service.getGameLoop().getSnapshot().getTask();
+
+            for (int i = 0; i < ROTATIONS; i++) {
+                long calls = service.getLocationServicesCalls().get();
+                long startNanos = System.nanoTime();
+                scenario.recreate();
+                long recreatedNanos = System.nanoTime();
+                await(scenario, activity -> activity.getGoogleMap() != null);
+                long mapNanos = System.nanoTime();
+                long locationCalls = service.getLocationServicesCalls().get() - calls;
+                //A new activity, its counter started at zero
+                AtomicReference<Long> mapCalls = new AtomicReference<>();
+                scenario.onActivity(activity -> mapCalls.set(activity.getMapsCalls().get()));
+                Log.i(TAG, "Rotation " + i + " resumed in " + (recreatedNanos - startNanos) / 1000000
+                        + " ms, map ready in " + (mapNanos - startNanos) / 1000000 + " ms, "
+                        + locationCalls + " location and " + mapCalls.get() + " map Play Services calls");
+
+                //Same service and game, the location request was left alone
+                assertSame(service, getService(scenario));
+                assertSame(task, service.getGameLoop().getSnapshot().getTask());
+                assertTrue(service.isRequestingLocationUpdates());
+                assertEquals(0, locationCalls);
+                assertEquals(MAP_CALLS_PER_ROTATION, (long) mapCalls.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.health_booster;
+
+import android.location.Location;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Where the tracking service gets its fixes from: the fused location provider, or a recorded
+ * trace replayed through the same path for reproducible runs on an emulator.
+ */
+interface FixSource {
+
+    interface Callback {
+        /**
+         * @param lastKnown true for a cached location shown before the first fresh fix
+         */
+        void onFix(Location location, boolean lastKnown);
+    }
+
+    /**
+     * @return true if fixes need the location permission
+     */
+    boolean requiresPermission();
+
+    /**
+     * Starts delivering fixes, or renews the request when already started.
+     */
+    void request(LocationRequest request);
+
+    void stop();
+}
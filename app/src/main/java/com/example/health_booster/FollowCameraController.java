@@ -0,0 +1,232 @@
+package com.example.health_booster;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+/**
+ * Keeps the user on screen without moving the camera on every fix. The camera is only
+ * recentered once the user leaves an inner box of the visible region, fixes arriving while
+ * a recenter is animating are coalesced into one follow-up, and following pauses while the
+ * user pans the map.
+ */
+public class FollowCameraController implements GoogleMap.OnCameraMoveStartedListener, GoogleMap.OnCameraIdleListener {
+
+    //Share of the visible width and height, centred, the user can move in without recentering
+    static final double DEFAULT_INNER_BOX_FRACTION = 0.5;
+    //Following resumes this long after the user stopped panning
+    static final long RESUME_DELAY_MILLIS = 5000;
+
+    /**
+     * The map's camera, as far as following needs it.
+     */
+    interface Camera {
+        void moveTo(LatLng target);
+
+        void animateTo(LatLng target, GoogleMap.CancelableCallback callback);
+
+        LatLngBounds getVisibleBounds();
+    }
+
+    /**
+     * Delays resuming after a gesture, the main thread's Handler outside of tests.
+     */
+    interface Scheduler {
+        void postDelayed(Runnable runnable, long delayMillis);
+
+        void removeCallbacks(Runnable runnable);
+    }
+
+    private final Camera camera;
+    private final Scheduler scheduler;
+    private double innerBoxFraction = DEFAULT_INNER_BOX_FRACTION;
+
+    //Visible region cached on camera idle, so a fix does not need to query the projection
+    private boolean boundsKnown;
+    private double south;
+    private double west;
+    private double north;
+    private double east;
+
+    private boolean animating;
+    private boolean userPanning;
+    private LatLng lastPosition;
+    private LatLng pendingTarget;
+
+    private int recenterCount;
+    private int coalescedCount;
+
+    private final Runnable resumeFollowing = new Runnable() {
+        @Override
+        public void run() {
+            userPanning = false;
+            if (lastPosition != null)
+            {
+                onUserPosition(lastPosition);
+            }
+        }
+    };
+
+    private final GoogleMap.CancelableCallback animationCallback = new GoogleMap.CancelableCallback() {
+        @Override
+        public void onFinish() {
+            animating = false;
+        }
+
+        @Override
+        public void onCancel() {
+            animating = false;
+        }
+    };
+
+    public FollowCameraController(final GoogleMap googleMap) {
+        this(new Camera() {
+            @Override
+            public void moveTo(LatLng target) {
+                googleMap.moveCamera(CameraUpdateFactory.newLatLng(target));
+            }
+
+            @Override
+            public void animateTo(LatLng target, GoogleMap.CancelableCallback callback) {
+                googleMap.animateCamera(CameraUpdateFactory.newLatLng(target), callback);
+            }
+
+            @Override
+            public LatLngBounds getVisibleBounds() {
+                return googleMap.getProjection().getVisibleRegion().latLngBounds;
+            }
+        }, new Scheduler() {
+            private final Handler handler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void postDelayed(Runnable runnable, long delayMillis) {
+                handler.postDelayed(runnable, delayMillis);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable runnable) {
+                handler.removeCallbacks(runnable);
+            }
+        });
+    }
+
+    FollowCameraController(Camera camera, Scheduler scheduler) {
+        this.camera = camera;
+        this.scheduler = scheduler;
+    }
+
+    public void onUserPosition(LatLng latLng) {
+        lastPosition = latLng;
+        if (userPanning)
+        {
+            return;
+        }
+        if (animating)
+        {
+            //Only the latest target matters once the running animation settles
+            if (pendingTarget != null)
+            {
+                coalescedCount++;
+            }
+            pendingTarget = latLng;
+            return;
+        }
+        if (boundsKnown && insideInnerBox(latLng.latitude, latLng.longitude, south, west, north, east, innerBoxFraction))
+        {
+            return;
+        }
+        recenter(latLng);
+    }
+
+    private void recenter(LatLng latLng) {
+        recenterCount++;
+        if (!boundsKnown)
+        {
+            //Nothing sensible on screen yet, jump straight to the user
+            camera.moveTo(latLng);
+            return;
+        }
+        animating = true;
+        boundsKnown = false;
+        camera.animateTo(latLng, animationCallback);
+    }
+
+    @Override
+    public void onCameraMoveStarted(int reason) {
+        if (reason == GoogleMap.OnCameraMoveStartedListener.REASON_GESTURE)
+        {
+            userPanning = true;
+            pendingTarget = null;
+            scheduler.removeCallbacks(resumeFollowing);
+        }
+    }
+
+    @Override
+    public void onCameraIdle() {
+        LatLngBounds bounds = camera.getVisibleBounds();
+        south = bounds.southwest.latitude;
+        west = bounds.southwest.longitude;
+        north = bounds.northeast.latitude;
+        east = bounds.northeast.longitude;
+        boundsKnown = true;
+        animating = false;
+        if (userPanning)
+        {
+            scheduler.removeCallbacks(resumeFollowing);
+            scheduler.postDelayed(resumeFollowing, RESUME_DELAY_MILLIS);
+        }
+        else if (pendingTarget != null)
+        {
+            LatLng target = pendingTarget;
+            pendingTarget = null;
+            onUserPosition(target);
+        }
+    }
+
+    /**
+     * Stops a pending resume, to be called when the map goes away.
+     */
+    public void release() {
+        scheduler.removeCallbacks(resumeFollowing);
+    }
+
+    static boolean insideInnerBox(double latitude, double longitude, double south, double west, double north, double east, double fraction) {
+        //Unwrap a visible region crossing the antimeridian
+        if (east < west)
+        {
+            east += 360;
+            if (longitude < west)
+            {
+                longitude += 360;
+            }
+        }
+        double latitudeMargin = (north - south) * (1 - fraction) / 2;
+        double longitudeMargin = (east - west) * (1 - fraction) / 2;
+        return latitude >= south + latitudeMargin && latitude <= north - latitudeMargin
+                && longitude >= west + longitudeMargin && longitude <= east - longitudeMargin;
+    }
+
+    public double getInnerBoxFraction() {
+        return innerBoxFraction;
+    }
+
+    public void setInnerBoxFraction(double innerBoxFraction) {
+        this.innerBoxFraction = innerBoxFraction;
+    }
+
+    public boolean isUserPanning() {
+        return userPanning;
+    }
+
+    public int getRecenterCount() {
+        return recenterCount;
+    }
+
+    public int getCoalescedCount() {
+        return coalescedCount;
+    }
+}
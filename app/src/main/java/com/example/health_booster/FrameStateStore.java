@@ -0,0 +1,118 @@
+package com.example.health_booster;
+
+import android.view.Choreographer;
+
+import com.example.health_booster.engine.GameSnapshot;
+import com.example.health_booster.engine.Metrics;
+
+/**
+ * What the screen should show, drawn at most once per display frame. New snapshots and scores
+ * only replace the pending state, the next frame then renders the difference to what was drawn
+ * last, so a burst of fixes between two frames costs a single render. Main thread only.
+ */
+class FrameStateStore implements Choreographer.FrameCallback {
+
+    /**
+     * Posts a callback for the next frame, Choreographer's in the app.
+     */
+    interface FrameScheduler {
+        void postFrameCallback(Choreographer.FrameCallback callback);
+    }
+
+    interface Renderer {
+        /**
+         * Draws the difference between two snapshots, everything if previous is null.
+         *
+         * @return false if nothing can be drawn yet, the snapshot then stays pending
+         */
+        boolean renderSnapshot(GameSnapshot previous, GameSnapshot snapshot, long fixReceivedNanos);
+
+        void renderScore(int score);
+    }
+
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+
+    private final Renderer renderer;
+    private final FrameScheduler scheduler;
+    private boolean framePosted;
+    private GameSnapshot pendingSnapshot;
+    private long pendingFixNanos;
+    //Null until drawn, the next frame then draws everything
+    private GameSnapshot renderedSnapshot;
+    private int pendingScore = NO_SCORE;
+    private int renderedScore = NO_SCORE;
+    private Metrics.Meter frameMeter;
+
+    FrameStateStore(Renderer renderer, FrameScheduler scheduler) {
+        this.renderer = renderer;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Shows the snapshot from the next frame on, unless a newer one arrives first.
+     */
+    void setSnapshot(GameSnapshot snapshot, long fixReceivedNanos) {
+        pendingSnapshot = snapshot;
+        pendingFixNanos = fixReceivedNanos;
+        scheduleFrame();
+    }
+
+    /**
+     * Draws the snapshot from scratch on the next frame, after the map was replaced or the
+     * display missed snapshots.
+     */
+    void redraw(GameSnapshot snapshot) {
+        renderedSnapshot = null;
+        setSnapshot(snapshot, 0);
+    }
+
+    void setScore(int score) {
+        pendingScore = score;
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!framePosted)
+        {
+            framePosted = true;
+            scheduler.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        boolean rendered = false;
+        if (pendingSnapshot != null && pendingSnapshot != renderedSnapshot
+                && renderer.renderSnapshot(renderedSnapshot, pendingSnapshot, pendingFixNanos))
+        {
+            renderedSnapshot = pendingSnapshot;
+            rendered = true;
+        }
+        if (pendingScore != renderedScore)
+        {
+            renderer.renderScore(pendingScore);
+            renderedScore = pendingScore;
+            rendered = true;
+        }
+        if (rendered && frameMeter != null)
+        {
+            frameMeter.mark(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return the last snapshot drawn, null if it is to be drawn from scratch
+     */
+    GameSnapshot getRenderedSnapshot() {
+        return renderedSnapshot;
+    }
+
+    boolean isFramePosted() {
+        return framePosted;
+    }
+
+    void setFrameMeter(Metrics.Meter frameMeter) {
+        this.frameMeter = frameMeter;
+    }
+}
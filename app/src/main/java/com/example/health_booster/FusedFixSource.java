@@ -0,0 +1,91 @@
+package com.example.health_booster;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.health_booster.engine.Metrics;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+/**
+ * Fixes from the fused location provider, delivered on a given looper.
+ */
+class FusedFixSource implements FixSource {
+
+    private final FusedLocationProviderClient fusedLocationClient;
+    private final Looper looper;
+    private final Callback callback;
+    private boolean started;
+    //Calls into Play Services, a configuration change should make none
+    private Metrics.Counter callCounter;
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult locationResult) {
+            for (Location location : locationResult.getLocations()) {
+                callback.onFix(location, false);
+            }
+        }
+    };
+
+    /**
+     * @param looper where fixes are delivered
+     */
+    FusedFixSource(Context context, Looper looper, Callback callback) {
+        this.fusedLocationClient = LocationServices.getFusedLocationProviderClient(context);
+        this.looper = looper;
+        this.callback = callback;
+    }
+
+    @Override
+    public boolean requiresPermission() {
+        return true;
+    }
+
+    //The service checks the permission before requesting
+    @SuppressLint("MissingPermission")
+    @Override
+    public void request(LocationRequest request) {
+        //Renewing the request with the same callback replaces the previous one
+        fusedLocationClient.requestLocationUpdates(request, locationCallback, looper);
+        countCall();
+        if (!started)
+        {
+            started = true;
+            countCall();
+            //Show the last known location straight away instead of waiting for the first fix
+            fusedLocationClient.getLastLocation().addOnSuccessListener(new Handler(looper)::post, location -> {
+                if (location != null)
+                {
+                    callback.onFix(location, true);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (started)
+        {
+            fusedLocationClient.removeLocationUpdates(locationCallback);
+            countCall();
+            started = false;
+        }
+    }
+
+    private void countCall() {
+        if (callCounter != null)
+        {
+            callCounter.increment();
+        }
+    }
+
+    void setCallCounter(Metrics.Counter callCounter) {
+        this.callCounter = callCounter;
+    }
+}
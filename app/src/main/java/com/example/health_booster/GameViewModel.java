@@ -0,0 +1,86 @@
+package com.example.health_booster;
+
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+/**
+ * Keeps the activity bound to the {@link TrackingService} across configuration changes. The
+ * binding belongs to the application context, so a rotated activity finds the service, its game
+ * and its location request as they were, and unbinds only when the activity finishes for good.
+ * What a new process needs to continue, the service restores from its session cache, the rest
+ * of the activity's state is kept in the saved state handle.
+ */
+public class GameViewModel extends AndroidViewModel {
+
+    private static final String KEY_PERMISSION_REQUESTED = "permission_requested";
+
+    private final SavedStateHandle savedState;
+    private final MutableLiveData<TrackingService> trackingService = new MutableLiveData<>();
+    private boolean bound;
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            trackingService.setValue(((TrackingService.LocalBinder) binder).getService());
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            trackingService.setValue(null);
+        }
+    };
+
+    public GameViewModel(@NonNull Application application, @NonNull SavedStateHandle savedState) {
+        super(application);
+        this.savedState = savedState;
+    }
+
+    /**
+     * Binds to the service unless already bound, the intent's extras configure a new service.
+     */
+    void bind(Intent serviceIntent) {
+        if (!bound)
+        {
+            bound = getApplication().bindService(serviceIntent, serviceConnection, Context.BIND_AUTO_CREATE);
+        }
+    }
+
+    /**
+     * The bound service, null until connected.
+     */
+    LiveData<TrackingService> getTrackingService() {
+        return trackingService;
+    }
+
+    /**
+     * Whether the location permission was asked for, so a rotation during the dialog does not ask again.
+     */
+    boolean isPermissionRequested() {
+        Boolean requested = savedState.get(KEY_PERMISSION_REQUESTED);
+        return requested != null && requested;
+    }
+
+    void setPermissionRequested(boolean requested) {
+        savedState.set(KEY_PERMISSION_REQUESTED, requested);
+    }
+
+    @Override
+    protected void onCleared() {
+        //The activity finished, the service keeps tracking only if it was started in the foreground
+        if (bound)
+        {
+            bound = false;
+            getApplication().unbindService(serviceConnection);
+        }
+        trackingService.setValue(null);
+    }
+}
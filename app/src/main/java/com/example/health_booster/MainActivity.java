@@ -1,55 +1,119 @@
 package com.example.health_booster;
 
 import android.Manifest;
+import android.app.ActivityManager;
 import android.content.Context;
+import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Color;
-import android.location.Location;
-import android.location.LocationListener;
-import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Debug;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
-
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.maps.CameraUpdateFactory;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.example.health_booster.engine.GameLoop;
+import com.example.health_booster.engine.GameSnapshot;
+import com.example.health_booster.engine.GameTask;
+import com.example.health_booster.engine.Metrics;
+import com.example.health_booster.engine.TracePath;
 import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.GoogleMapOptions;
 import com.google.android.gms.maps.MapView;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.model.Circle;
-import com.google.android.gms.maps.model.CircleOptions;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
-import com.google.android.gms.maps.model.MarkerOptions;
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
 
-public class MainActivity extends AppCompatActivity implements OnMapReadyCallback, LocationListener {
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class MainActivity extends AppCompatActivity implements OnMapReadyCallback, TrackingService.Display, FrameStateStore.Renderer {
+
+    private static final String TAG = "MainActivity";
+    //Replays the tasks of a session whose seed was logged
+    public static final String EXTRA_TASK_SEED = "task_seed";
+    //Replays a GPX or CSV trace instead of real fixes, at 1 to 1000 times the recorded speed
+    public static final String EXTRA_REPLAY_TRACE = "replay_trace";
+    public static final String EXTRA_REPLAY_SPEED = "replay_speed";
+    //Trail started by long-pressing the refresh button, each checkpoint is worth a point
+    static final int TRAIL_CHECKPOINTS = 50;
+    static final int CHECKPOINT_POINTS = 1;
+    //How often full rendering is reconsidered while in lite map mode
+    private static final long RESTORE_CHECK_MILLIS = 30000;
 
     private MapView mapView;
+    //MapView lifecycle is forwarded only once its deferred onCreate() ran
+    private boolean mapViewStarted;
     private GoogleMap googleMap;
+    //Tracking and the game live in the service, this activity binds to it only to display them
+    private TrackingService trackingService;
+    //Holds the binding across configuration changes, a rotation then neither rebinds nor re-requests locations
+    private GameViewModel viewModel;
+    //The service's game once bound, until then a detached one running on the main thread
+    private GameLoop gameLoop = createDetachedGameLoop();
+    //Snapshots and score wait here for the next frame, which draws only what changed
+    private final FrameStateStore frameState = new FrameStateStore(this, callback -> Choreographer.getInstance().postFrameCallback(callback));
+    private long renderedFixNanos;
+    //Score label, the view is looked up once and the text built in place
+    private TextView scoreView;
+    private final StringBuilder scoreLabel = new StringBuilder();
+    private int scoreLabelPrefixLength;
+    private boolean destroyed;
     private LatLng latLng;
-    private Circle circle;
     private LatLng taskLatLng;
-    private Marker marker;
+    //Owns the user circle and task marker, moves them instead of re-adding
+    private final MapOverlayRenderer overlayRenderer = new MapOverlayRenderer();
+    //Recenters the camera only when the user walks out of the middle of the screen
+    private FollowCameraController followCamera;
     private SharedPreferences sharedPreferences;
-    private LocationManager locationManager;
-
-    //Here use Handler class for continuous location update logic
-    private final Handler locationHandler = new Handler();
-    private final Runnable locationUpdater = new Runnable() {
+    //The service's score once bound, read from data persistence for the first frame until then
+    private ScoreStore scoreStore;
+    private final StartupTimer startupTimer = new StartupTimer(SystemClock.elapsedRealtime());
+    //Display metrics, dumped with the service's by long-pressing the score
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Histogram fixToRenderMicros = metrics.histogram("fix.to.render.us", Metrics.exponentialBounds(50, 2, 16));
+    private final Metrics.Histogram updateTaskMicros = metrics.histogram("update.task.us", Metrics.exponentialBounds(50, 2, 16));
+    private final Metrics.Meter rendererCalls = metrics.meter("renderer.calls");
+    private final Metrics.Meter renderedFrames = metrics.meter("rendered.frames");
+    //Play Services calls of the map, a new MapView makes them for every activity and map mode
+    private final Metrics.Counter mapsCalls = metrics.counter("maps.calls");
+    //Lite map mode under memory pressure, the service keeps tracking while the map view is replaced
+    private final MemoryPressure memoryPressure = new MemoryPressure();
+    private final Handler memoryHandler = new Handler(Looper.getMainLooper());
+    private boolean replacingMapView;
+    //Whether the current MapView renders in lite mode, it may lag behind memoryPressure while stopped
+    private boolean liteMapView;
+    private final Runnable restoreCheck = new Runnable() {
         @Override
         public void run() {
-            updateLocation();
-            //Do every 1 second
-            locationHandler.postDelayed(this, 1000);
+            ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+            ((ActivityManager) getSystemService(Context.ACTIVITY_SERVICE)).getMemoryInfo(memoryInfo);
+            if (memoryPressure.checkRestore(memoryInfo.lowMemory, SystemClock.elapsedRealtime()))
+            {
+                logHeap("Leaving lite map mode");
+                overlayRenderer.setReducedDetail(false);
+                replaceMapView(false);
+            }
+            else if (memoryPressure.isDegraded())
+            {
+                memoryHandler.postDelayed(this, RESTORE_CHECK_MILLIS);
+            }
         }
     };
 
@@ -57,9 +121,20 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        scoreView = findViewById(R.id.textView);
+        scoreLabel.append(getString(R.string.Total_Points)).append(' ');
+        scoreLabelPrefixLength = scoreLabel.length();
+
+        viewModel = new ViewModelProvider(this).get(GameViewModel.class);
 
         //Get Data persistence
-        sharedPreferences = getPreferences(Context.MODE_PRIVATE);
+        setSharedPreferences(getPreferences(Context.MODE_PRIVATE));
+        //After a configuration change the service is still bound, its game and score are shown from memory
+        TrackingService retainedService = viewModel.getTrackingService().getValue();
+        if (retainedService != null)
+        {
+            useService(retainedService);
+        }
 
         //Update score display from data persistence
         updateCurrentScore(getCurrentScore());
@@ -70,16 +145,101 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
             mapViewBundle = savedInstanceState.getBundle("MapViewBundleKey");
         }
 
-        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+        findViewById(R.id.button).setOnLongClickListener(view -> startTrail());
+        scoreView.setOnLongClickListener(view -> {
+            dumpMetrics();
+            return true;
+        });
+        overlayRenderer.setCallMeter(rendererCalls);
+        frameState.setFrameMeter(renderedFrames);
+
+        //The service keeps running between activities, binding only attaches to it
+        Intent serviceIntent = new Intent(this, TrackingService.class);
+        if (getIntent().hasExtra(EXTRA_TASK_SEED))
+        {
+            serviceIntent.putExtra(EXTRA_TASK_SEED, getIntent().getLongExtra(EXTRA_TASK_SEED, 0));
+        }
+        if (getIntent().hasExtra(EXTRA_REPLAY_TRACE))
+        {
+            serviceIntent.putExtra(EXTRA_REPLAY_TRACE, getIntent().getStringExtra(EXTRA_REPLAY_TRACE));
+            serviceIntent.putExtra(EXTRA_REPLAY_SPEED, getIntent().getFloatExtra(EXTRA_REPLAY_SPEED, 1));
+        }
+        viewModel.bind(serviceIntent);
+        viewModel.getTrackingService().observe(this, this::onServiceChanged);
 
         mapView = findViewById(R.id.mapView);
-        mapView.onCreate(mapViewBundle);
+        //Map and Play Services setup is slow, do it only once the first frame is on screen
+        final Bundle savedMapState = mapViewBundle;
+        final View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                //Posted, so it runs after this frame is drawn
+                content.post(() -> initialiseMap(savedMapState));
+                return true;
+            }
+        });
+    }
+
+    private void onServiceChanged(TrackingService service) {
+        //Already taken over in onCreate() after a configuration change
+        if (service == trackingService)
+        {
+            return;
+        }
+        if (service == null)
+        {
+            trackingService = null;
+            return;
+        }
+        useService(service);
+        updateCurrentScore(getCurrentScore());
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED))
+        {
+            attachToService();
+        }
+    }
+
+    private void useService(TrackingService service) {
+        trackingService = service;
+        gameLoop = service.getGameLoop();
+        scoreStore = service.getScoreStore();
+    }
+
+    private void initialiseMap(Bundle savedMapState) {
+        if (destroyed)
+        {
+            return;
+        }
+        startMapView(savedMapState);
+    }
+
+    private void startMapView(Bundle savedMapState) {
+        //Bring the MapView to the activity's lifecycle state
+        Lifecycle.State state = getLifecycle().getCurrentState();
+        mapView.onCreate(savedMapState);
+        mapsCalls.increment();
+        if (state.isAtLeast(Lifecycle.State.STARTED))
+        {
+            mapView.onStart();
+        }
+        if (state.isAtLeast(Lifecycle.State.RESUMED))
+        {
+            mapView.onResume();
+        }
+        mapViewStarted = true;
         mapView.getMapAsync(this);
+        mapsCalls.increment();
     }
 
     @Override
     public void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
+        if (!mapViewStarted)
+        {
+            return;
+        }
 
         //MapView codes
         Bundle mapViewBundle = outState.getBundle("MapViewBundleKey");
@@ -94,137 +254,480 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
     @Override
     protected void onResume() {
         super.onResume();
-        mapView.onResume();
+        if (mapViewStarted)
+        {
+            mapView.onResume();
+        }
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        mapView.onStart();
+        if (mapViewStarted)
+        {
+            mapView.onStart();
+        }
+        applyMapMode();
+        //Back on screen, per-fix updates and one catch-up render of the current state
+        if (trackingService != null)
+        {
+            attachToService();
+        }
+    }
+
+    private void attachToService() {
+        trackingService.attach(this);
+        if (googleMap != null)
+        {
+            frameState.redraw(gameLoop.getSnapshot());
+            startLocationUpdates();
+        }
     }
 
     @Override
     protected void onStop() {
+        //The service keeps a walk going with batched fixes, or stops tracking if there is none
+        //A configuration change keeps everything as it is, the next activity attaches right away
+        if (trackingService != null && !isChangingConfigurations())
+        {
+            trackingService.detach();
+        }
         super.onStop();
-        mapView.onStop();
+        if (mapViewStarted)
+        {
+            mapView.onStop();
+        }
+        //Restoring full rendering waits until the map is on screen again
+        memoryHandler.removeCallbacks(restoreCheck);
     }
 
     @Override
     protected void onPause() {
-        mapView.onPause();
+        //Make sure the latest score is on disk before the process may be killed
+        if (trackingService != null)
+        {
+            trackingService.flush();
+        }
+        if (mapViewStarted)
+        {
+            mapView.onPause();
+        }
         super.onPause();
     }
 
     @Override
     protected void onDestroy() {
-        mapView.onDestroy();
+        destroyed = true;
+        memoryHandler.removeCallbacks(restoreCheck);
+        if (followCamera != null)
+        {
+            followCamera.release();
+        }
+        //The view model stays bound, only this activity stops being told about the game
+        if (trackingService != null)
+        {
+            trackingService.detachDisplay(this);
+        }
+        trackingService = null;
+        if (mapViewStarted)
+        {
+            mapView.onDestroy();
+        }
+        //A frame already posted then draws nothing on the destroyed map
+        googleMap = null;
         super.onDestroy();
     }
 
     @Override
     public void onLowMemory() {
         super.onLowMemory();
-        mapView.onLowMemory();
+        if (mapViewStarted)
+        {
+            mapView.onLowMemory();
+        }
+        if (memoryPressure.onLowMemory(SystemClock.elapsedRealtime()))
+        {
+            enterLiteMapMode();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (memoryPressure.onTrimMemory(level, SystemClock.elapsedRealtime()))
+        {
+            enterLiteMapMode();
+        }
+    }
+
+    private void enterLiteMapMode() {
+        //A lite map is a single bitmap, far smaller than the vector map, and the path and checkpoints go
+        logHeap("Entering lite map mode");
+        overlayRenderer.setReducedDetail(true);
+        //In the background only marked degraded, building a new map there would cost memory for nothing
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED))
+        {
+            applyMapMode();
+        }
+    }
+
+    /**
+     * Swaps in a map view matching the memory pressure, while started only.
+     */
+    private void applyMapMode() {
+        boolean degraded = memoryPressure.isDegraded();
+        if (liteMapView != degraded)
+        {
+            replaceMapView(degraded);
+        }
+        memoryHandler.removeCallbacks(restoreCheck);
+        if (degraded)
+        {
+            memoryHandler.postDelayed(restoreCheck, RESTORE_CHECK_MILLIS);
+        }
+    }
+
+    private void replaceMapView(boolean liteMode) {
+        //The map mode is fixed when a MapView is created, so swap in a new one with the same lifecycle state
+        if (!mapViewStarted)
+        {
+            return;
+        }
+        MapView oldMapView = mapView;
+        ViewGroup parent = (ViewGroup) oldMapView.getParent();
+        int position = parent.indexOfChild(oldMapView);
+        ViewGroup.LayoutParams layoutParams = oldMapView.getLayoutParams();
+        Lifecycle.State state = getLifecycle().getCurrentState();
+        if (state.isAtLeast(Lifecycle.State.RESUMED))
+        {
+            oldMapView.onPause();
+        }
+        if (state.isAtLeast(Lifecycle.State.STARTED))
+        {
+            oldMapView.onStop();
+        }
+        oldMapView.onDestroy();
+        parent.removeView(oldMapView);
+        //Fixes are not drawn until the new map is ready, it then draws everything
+        googleMap = null;
+        replacingMapView = true;
+        liteMapView = liteMode;
+
+        mapView = new MapView(this, new GoogleMapOptions().liteMode(liteMode));
+        mapView.setId(R.id.mapView);
+        parent.addView(mapView, position, layoutParams);
+        startMapView(null);
+    }
+
+    private static void logHeap(String transition) {
+        Runtime runtime = Runtime.getRuntime();
+        long javaHeap = runtime.totalMemory() - runtime.freeMemory();
+        Log.i(TAG, transition + ", java heap " + javaHeap / 1024 + " of " + runtime.maxMemory() / 1024
+                + " KiB, native heap " + Debug.getNativeHeapAllocatedSize() / 1024 + " KiB");
     }
 
     @Override
     public void onMapReady(GoogleMap googleMap) {
         //Init MapView when ready, set GoogleMap to global variable for others methods to access
         this.googleMap = googleMap;
+        overlayRenderer.attach(googleMap);
         googleMap.setMinZoomPreference(15);
+        if (followCamera != null)
+        {
+            followCamera.release();
+        }
+        followCamera = new FollowCameraController(googleMap);
+        googleMap.setOnCameraMoveStartedListener(followCamera);
+        //The renderer needs the zoom to tell visible from sub-pixel moves, the camera the visible region
+        googleMap.setOnCameraIdleListener(() -> {
+            overlayRenderer.setZoom(googleMap.getCameraPosition().zoom);
+            followCamera.onCameraIdle();
+        });
+        if (replacingMapView)
+        {
+            replacingMapView = false;
+            logHeap(memoryPressure.isDegraded() ? "Lite map mode ready" : "Full map mode ready");
+        }
+
+        //Draw what the service has, then make sure it is tracking
+        if (trackingService != null)
+        {
+            frameState.redraw(gameLoop.getSnapshot());
+            startLocationUpdates();
+        }
+    }
 
-        //Start of updating location
-        locationHandler.postDelayed(locationUpdater, 0);
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        //Permission dialog answered, start tracking now if it was granted
+        if (requestCode == 1 && grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED)
+        {
+            startLocationUpdates();
+        }
     }
 
-    protected void updateLocation() {
-        //Core App logic
+    protected void startLocationUpdates() {
+        //The service subscribes only once, the game then comes back through onSnapshot
+        if (trackingService == null || googleMap == null)
+        {
+            return;
+        }
         //Check if GPS permission is granted. If not granted, request for it
         //If GPS permission is never granted, the user's location cannot be updated
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED || ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED)
         {
-            //Get device's current location by Google Service API
-            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 0, 0, (LocationListener) this);
-            Task<Location> locationResult = LocationServices.getFusedLocationProviderClient(this).getLastLocation();
-            //Async get location, need use callback to handle
-            locationResult.addOnCompleteListener(this, (OnCompleteListener<Location>) task -> {
-                if (task.isSuccessful()) {
-                    //Location can be gotten successfully
-                    if (task.getResult() != null)
-                    {
-                        // Remove last user's location if exist
-                        if (circle != null)
-                        {
-                            circle.remove();
-                        }
-                        latLng = new LatLng(task.getResult().getLatitude(), task.getResult().getLongitude());
-                        //Add back user's location circle mark
-                        circle = googleMap.addCircle(new CircleOptions()
-                                .center(latLng)
-                                .radius(30)
-                                .strokeColor(Color.RED)
-                                .fillColor(Color.BLUE));
-                        //Center user's location
-                        googleMap.moveCamera(CameraUpdateFactory.newLatLng(latLng));
-                        //If no tasks yet, generate one
-                        if (taskLatLng == null)
-                        {
-                            updateTask(null);
-                        }
-                        //Else check if the task is completed
-                        else if (Math.abs(taskLatLng.longitude - latLng.longitude) < 0.00050 && Math.abs(taskLatLng.latitude - latLng.latitude) < 0.00050)
-                        {
-                            //Update score
-                            updateCurrentScore(getCurrentScore() + 1);
-                            //Generate another task
-                            updateTask(null);
-                            //Notify user for task completions
-                            Toast.makeText(getApplicationContext(), getString(R.string.task_completed), Toast.LENGTH_LONG).show();
-                        }
-                    }
-                }
-            });
+            trackingService.startTracking();
         }
-        else
+        else if (!viewModel.isPermissionRequested())
         {
-            //Check if GPS permission is granted. If not granted, request for it
+            //Ask only once, also across rotations, the dialog itself pauses and resumes the activity
+            viewModel.setPermissionRequested(true);
             ActivityCompat.requestPermissions(this,
                     new String[]{android.Manifest.permission.ACCESS_FINE_LOCATION},
                     1);
         }
     }
 
+    private GameLoop createDetachedGameLoop() {
+        GameLoop loop = new GameLoop(this, Runnable::run);
+        loop.setObserver(snapshot -> onSnapshot(snapshot, 0));
+        return loop;
+    }
+
+    private boolean isMapReady() {
+        //onMapReady() draws everything once the map is there
+        return googleMap != null && followCamera != null;
+    }
+
+    private void renderAll(GameSnapshot snapshot) {
+        //Catch up with everything the service processed while nothing was drawn
+        if (!snapshot.hasPosition())
+        {
+            renderLastSession(snapshot);
+            return;
+        }
+        latLng = new LatLng(snapshot.getLatitude(), snapshot.getLongitude());
+        overlayRenderer.setUserPosition(latLng);
+        followCamera.onUserPosition(latLng);
+        onCircleShown();
+        if (snapshot.getTask() != null)
+        {
+            taskLatLng = new LatLng(snapshot.getTask().getLatitude(), snapshot.getTask().getLongitude());
+            overlayRenderer.setTaskPosition(taskLatLng);
+        }
+        overlayRenderer.resetTrace(snapshot.getTrace());
+        renderCheckpoints(snapshot);
+    }
+
+    private void renderLastSession(GameSnapshot snapshot) {
+        //Where the user was when the app last stopped, replaced by the first fix
+        SessionCache sessionCache = trackingService.getSessionCache();
+        if (!sessionCache.isLoaded())
+        {
+            return;
+        }
+        LatLng lastLatLng = new LatLng(sessionCache.getLatitude(), sessionCache.getLongitude());
+        overlayRenderer.setUserPosition(lastLatLng);
+        followCamera.onUserPosition(lastLatLng);
+        onCircleShown();
+        if (snapshot.getTask() != null)
+        {
+            taskLatLng = new LatLng(snapshot.getTask().getLatitude(), snapshot.getTask().getLongitude());
+            overlayRenderer.setTaskPosition(taskLatLng);
+        }
+    }
+
+    private void onCircleShown() {
+        if (startupTimer.onFirstCircle(SystemClock.elapsedRealtime()))
+        {
+            Log.i(TAG, "Time to first circle " + startupTimer.getTimeToFirstCircle() + " ms");
+        }
+    }
+
+    private void renderCheckpoints(GameSnapshot snapshot) {
+        overlayRenderer.clearCheckpoints();
+        for (int i = 0; i < snapshot.getCheckpointCount(); i++)
+        {
+            if (!snapshot.isCheckpointReached(i))
+            {
+                GameTask checkpoint = snapshot.getCheckpoint(i);
+                overlayRenderer.addCheckpoint(i, new LatLng(checkpoint.getLatitude(), checkpoint.getLongitude()));
+            }
+        }
+    }
+
+    @Override
+    public void onSnapshot(GameSnapshot snapshot, long fixReceivedNanos) {
+        //Nothing is drawn while the map view is replaced, the new map draws everything
+        if (!isMapReady())
+        {
+            return;
+        }
+        frameState.setSnapshot(snapshot, fixReceivedNanos);
+    }
+
+    @Override
+    public boolean renderSnapshot(GameSnapshot previous, GameSnapshot snapshot, long fixReceivedNanos) {
+        if (!isMapReady())
+        {
+            return false;
+        }
+        if (previous == null)
+        {
+            renderAll(snapshot);
+        }
+        else
+        {
+            renderChanges(previous, snapshot);
+        }
+        //Measured once per fix, at the frame that shows it
+        if (fixReceivedNanos != 0 && fixReceivedNanos != renderedFixNanos)
+        {
+            renderedFixNanos = fixReceivedNanos;
+            fixToRenderMicros.record((System.nanoTime() - fixReceivedNanos) / 1000);
+        }
+        return true;
+    }
+
+    @Override
+    public void renderScore(int score) {
+        scoreLabel.setLength(scoreLabelPrefixLength);
+        scoreLabel.append(score);
+        //TextView copies the text, so the builder is reused
+        scoreView.setText(scoreLabel);
+    }
+
+    private void renderChanges(GameSnapshot previous, GameSnapshot snapshot) {
+        //Move user's location circle mark and keep it on screen
+        if (snapshot.hasPosition() && (!previous.hasPosition()
+                || snapshot.getLatitude() != previous.getLatitude() || snapshot.getLongitude() != previous.getLongitude()))
+        {
+            latLng = new LatLng(snapshot.getLatitude(), snapshot.getLongitude());
+            overlayRenderer.setUserPosition(latLng);
+            followCamera.onUserPosition(latLng);
+            onCircleShown();
+        }
+        //Move the task marker to a new task
+        if (snapshot.getTask() != previous.getTask() && snapshot.getTask() != null)
+        {
+            taskLatLng = new LatLng(snapshot.getTask().getLatitude(), snapshot.getTask().getLongitude());
+            overlayRenderer.setTaskPosition(taskLatLng);
+        }
+        renderTraceChange(previous.getTrace(), snapshot.getTrace());
+        if (!snapshot.hasSameTrail(previous))
+        {
+            renderCheckpoints(snapshot);
+            if (snapshot.getCheckpointCount() > 0)
+            {
+                Toast.makeText(getApplicationContext(), getString(R.string.trail_started, snapshot.getCheckpointCount()), Toast.LENGTH_LONG).show();
+            }
+            //The service ends a trail once its last checkpoint is reached
+            else if (previous.getCheckpointCount() > 0)
+            {
+                Toast.makeText(getApplicationContext(), getString(R.string.trail_completed), Toast.LENGTH_LONG).show();
+            }
+        }
+        else if (snapshot.getCheckpointsRemaining() != previous.getCheckpointsRemaining())
+        {
+            for (int i = 0; i < snapshot.getCheckpointCount(); i++)
+            {
+                if (snapshot.isCheckpointReached(i) && !previous.isCheckpointReached(i))
+                {
+                    overlayRenderer.removeCheckpoint(i);
+                }
+            }
+        }
+    }
+
+    private void renderTraceChange(TracePath previous, TracePath trace) {
+        //Mirror the engine's simplified trace on the map, one point at a time where possible
+        if (trace == previous)
+        {
+            return;
+        }
+        if (trace == null)
+        {
+            overlayRenderer.clearTrace();
+        }
+        else if (trace.isAppendedTo(previous))
+        {
+            overlayRenderer.appendTracePoint(new LatLng(trace.getLatitude(), trace.getLongitude()));
+        }
+        else if (trace.isReplacementOf(previous))
+        {
+            overlayRenderer.replaceLastTracePoint(new LatLng(trace.getLatitude(), trace.getLongitude()));
+        }
+        else
+        {
+            overlayRenderer.resetTrace(trace);
+        }
+    }
+
     public void updateTask(View view)
     {
-        //Generating tasks requires user's current location so check for it first
-        if (latLng != null)
-        {
-            //Generate random location, there will be a bonus for users seldom when the task is too close to current location
-            taskLatLng = new LatLng(Math.random()*0.00500*(1 - (int)(Math.random()*3)) + latLng.latitude,
-                    Math.random()*0.00500*(1 - (int)(Math.random()*3)) + latLng.longitude);
-            //Force replace current task
-            if (marker != null)
+        //Called from the refresh button, the current task is skipped
+        final boolean skipped = view != null;
+        final GameLoop loop = gameLoop;
+        loop.execute(() -> {
+            //Timed on the game thread, where the new task is placed
+            long startNanos = System.nanoTime();
+            loop.getEngine().nextTask(skipped, System.currentTimeMillis());
+            updateTaskMicros.record((System.nanoTime() - startNanos) / 1000);
+        });
+    }
+
+    protected boolean startTrail() {
+        //Called from a long press on the refresh button, replaces any unfinished trail
+        final GameLoop loop = gameLoop;
+        loop.execute(() -> loop.getEngine().startTrail(TRAIL_CHECKPOINTS, System.currentTimeMillis()));
+        return true;
+    }
+
+    @Override
+    public void onTaskCompleted(GameTask task) {
+        //Notify user for task completions, the service scored it and assigns the next task right after
+        Toast.makeText(getApplicationContext(), getString(R.string.task_completed), Toast.LENGTH_LONG).show();
+    }
+
+    @Override
+    public void onScoreChanged(int score) {
+        updateCurrentScore(score);
+    }
+
+    protected void dumpMetrics() {
+        //Same report in logcat and in a file, to compare builds
+        long now = System.currentTimeMillis();
+        StringBuilder report = new StringBuilder();
+        try
+        {
+            metrics.dump(report, now);
+            if (trackingService != null)
+            {
+                trackingService.getMetrics().dump(report, now);
+            }
+            Log.i(TAG, "Metrics\n" + report);
+            try (Writer writer = new FileWriter(new File(getFilesDir(), "metrics-" + now + ".txt")))
             {
-                marker.remove();
+                writer.append(report);
             }
-            marker = googleMap.addMarker(new MarkerOptions().position(taskLatLng));
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Writing metrics failed", e);
         }
     }
 
     protected int getCurrentScore()
     {
-        // Get score from data persistence
-        return sharedPreferences.getInt("totalScore", 0);
+        // Get score from memory, loaded from data persistence on first use
+        return scoreStore.get();
     }
 
     protected void updateCurrentScore(int newScore)
     {
-        //Update new score to data persistence
-        sharedPreferences.edit().putInt("totalScore", newScore).commit();
-        //Also update the UI
-        ((TextView)findViewById(R.id.textView)).setText(
-                ((TextView)findViewById(R.id.textView)).getText().toString()
-                        .replaceAll(":.*+", ": " + newScore));
+        //The score is kept by the service, this only shows it on the next frame
+        frameState.setScore(newScore);
     }
 
     public MapView getMapView() {
@@ -241,6 +744,7 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     public void setGoogleMap(GoogleMap googleMap) {
         this.googleMap = googleMap;
+        overlayRenderer.attach(googleMap);
     }
 
     public LatLng getLatLng() {
@@ -249,14 +753,16 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     public void setLatLng(LatLng latLng) {
         this.latLng = latLng;
+        final GameLoop loop = gameLoop;
+        loop.execute(() -> loop.getEngine().setPosition(latLng.latitude, latLng.longitude, System.currentTimeMillis()));
     }
 
     public Circle getCircle() {
-        return circle;
+        return overlayRenderer.getUserCircle();
     }
 
     public void setCircle(Circle circle) {
-        this.circle = circle;
+        overlayRenderer.setUserCircle(circle);
     }
 
     public LatLng getTaskLatLng() {
@@ -265,14 +771,32 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     public void setTaskLatLng(LatLng taskLatLng) {
         this.taskLatLng = taskLatLng;
+        final GameLoop loop = gameLoop;
+        loop.execute(() -> loop.getEngine().setTask(new GameTask(taskLatLng.latitude, taskLatLng.longitude, System.currentTimeMillis())));
+    }
+
+    public GameLoop getGameLoop() {
+        return gameLoop;
+    }
+
+    public TrackingService getTrackingService() {
+        return trackingService;
     }
 
     public Marker getMarker() {
-        return marker;
+        return overlayRenderer.getTaskMarker();
     }
 
     public void setMarker(Marker marker) {
-        this.marker = marker;
+        overlayRenderer.setTaskMarker(marker);
+    }
+
+    public FollowCameraController getFollowCamera() {
+        return followCamera;
+    }
+
+    public MapOverlayRenderer getOverlayRenderer() {
+        return overlayRenderer;
     }
 
     public SharedPreferences getSharedPreferences() {
@@ -281,18 +805,22 @@ public class MainActivity extends AppCompatActivity implements OnMapReadyCallbac
 
     public void setSharedPreferences(SharedPreferences sharedPreferences) {
         this.sharedPreferences = sharedPreferences;
+        this.scoreStore = new ScoreStore(ScoreStore.preferences(sharedPreferences));
     }
 
-    public Handler getLocationHandler() {
-        return locationHandler;
+    public StartupTimer getStartupTimer() {
+        return startupTimer;
     }
 
-    public Runnable getLocationUpdater() {
-        return locationUpdater;
+    public Metrics.Counter getMapsCalls() {
+        return mapsCalls;
     }
 
-    @Override
-    public void onLocationChanged(@NonNull Location location) {
+    public Metrics getMetrics() {
+        return metrics;
+    }
 
+    public ScoreStore getScoreStore() {
+        return scoreStore;
     }
-}
\ No newline at end of file
+}
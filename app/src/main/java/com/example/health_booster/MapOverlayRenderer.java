@@ -0,0 +1,335 @@
+package com.example.health_booster;
+
+import android.graphics.Color;
+
+import com.example.health_booster.engine.Geo;
+import com.example.health_booster.engine.Metrics;
+import com.example.health_booster.engine.TracePath;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.Circle;
+import com.google.android.gms.maps.model.CircleOptions;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Keeps the user circle, the task marker and the walked path alive on the map and only moves
+ * them when the change is visible. Every call into the map is an IPC to the renderer, so unchanged or
+ * sub-pixel updates are dropped and counted.
+ */
+public class MapOverlayRenderer {
+
+    //Position changes smaller than this many screen pixels are not sent to the map
+    static final double PIXEL_THRESHOLD = 2;
+    //Ground resolution of zoom level 0 at the equator, in metres per pixel
+    static final double METRES_PER_PIXEL_ZOOM_0 = 156543.03392;
+
+    /**
+     * Where one overlay was last drawn. Decides whether a new position is a visible move and
+     * counts the map calls saved against removing and adding the overlay again on every update.
+     */
+    static class OverlayPosition {
+        static final int ADD = 0;
+        static final int MOVE = 1;
+        static final int SKIP = 2;
+
+        private double latitude = Double.NaN;
+        private double longitude = Double.NaN;
+        private long avoidedCalls;
+
+        /**
+         * @param drawn whether the overlay is on the map already
+         * @return ADD or MOVE, the position is then the drawn one, or SKIP for a sub-pixel move
+         */
+        int update(boolean drawn, double latitude, double longitude, float zoom) {
+            int action;
+            //A drawn overlay at an unknown position, e.g. one handed over from the activity, always moves
+            if (!drawn)
+            {
+                action = ADD;
+            }
+            else if (Double.isNaN(this.latitude)
+                    || Geo.distanceMetres(this.latitude, this.longitude, latitude, longitude) >= PIXEL_THRESHOLD * metresPerPixel(latitude, zoom))
+            {
+                //remove() and add before, a single move now
+                action = MOVE;
+                avoidedCalls++;
+            }
+            else
+            {
+                avoidedCalls += 2;
+                return SKIP;
+            }
+            this.latitude = latitude;
+            this.longitude = longitude;
+            return action;
+        }
+
+        void forget() {
+            latitude = longitude = Double.NaN;
+        }
+
+        long getAvoidedCalls() {
+            return avoidedCalls;
+        }
+    }
+
+    private GoogleMap googleMap;
+    private Circle userCircle;
+    private Marker taskMarker;
+    private Polyline tracePolyline;
+    //Trail checkpoint markers by checkpoint index, null once reached
+    private final ArrayList<Marker> checkpointMarkers = new ArrayList<>();
+    //Points of the walked path, kept so the polyline is extended rather than rebuilt
+    private final ArrayList<LatLng> tracePoints = new ArrayList<>();
+    private final OverlayPosition userPosition = new OverlayPosition();
+    private final OverlayPosition taskPosition = new OverlayPosition();
+    private float zoom = 15;
+    //Under memory pressure only the user circle and the task marker are drawn
+    private boolean reducedDetail;
+
+    private long rendererCalls;
+    private Metrics.Meter callMeter;
+
+    /**
+     * Binds to a map, overlays drawn on a previous map are forgotten.
+     */
+    public void attach(GoogleMap googleMap) {
+        if (this.googleMap == googleMap)
+        {
+            return;
+        }
+        if (this.googleMap != null)
+        {
+            userCircle = null;
+            taskMarker = null;
+            tracePolyline = null;
+            checkpointMarkers.clear();
+            userPosition.forget();
+            taskPosition.forget();
+        }
+        this.googleMap = googleMap;
+    }
+
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    public void setUserPosition(LatLng latLng) {
+        int action = userPosition.update(userCircle != null, latLng.latitude, latLng.longitude, zoom);
+        if (action == OverlayPosition.ADD)
+        {
+            userCircle = googleMap.addCircle(new CircleOptions()
+                    .center(latLng)
+                    .radius(30)
+                    .strokeColor(Color.RED)
+                    .fillColor(Color.BLUE));
+            countRendererCall();
+        }
+        else if (action == OverlayPosition.MOVE)
+        {
+            userCircle.setCenter(latLng);
+            countRendererCall();
+        }
+    }
+
+    public void setTaskPosition(LatLng latLng) {
+        int action = taskPosition.update(taskMarker != null, latLng.latitude, latLng.longitude, zoom);
+        if (action == OverlayPosition.ADD)
+        {
+            taskMarker = googleMap.addMarker(new MarkerOptions().position(latLng));
+            countRendererCall();
+        }
+        else if (action == OverlayPosition.MOVE)
+        {
+            taskMarker.setPosition(latLng);
+            countRendererCall();
+        }
+    }
+
+    /**
+     * Drops the walked path and the checkpoint markers and stops drawing them until full detail
+     * is restored, the caller then redraws them from the engine.
+     */
+    public void setReducedDetail(boolean reducedDetail) {
+        this.reducedDetail = reducedDetail;
+        if (reducedDetail)
+        {
+            clearCheckpoints();
+            if (tracePolyline != null)
+            {
+                tracePolyline.remove();
+                tracePolyline = null;
+                countRendererCall();
+            }
+            tracePoints.clear();
+            tracePoints.trimToSize();
+            checkpointMarkers.trimToSize();
+        }
+    }
+
+    public boolean isReducedDetail() {
+        return reducedDetail;
+    }
+
+    public void appendTracePoint(LatLng latLng) {
+        if (reducedDetail)
+        {
+            return;
+        }
+        tracePoints.add(latLng);
+        updateTrace();
+    }
+
+    public void replaceLastTracePoint(LatLng latLng) {
+        if (reducedDetail)
+        {
+            return;
+        }
+        if (tracePoints.isEmpty())
+        {
+            tracePoints.add(latLng);
+        }
+        else
+        {
+            tracePoints.set(tracePoints.size() - 1, latLng);
+        }
+        updateTrace();
+    }
+
+    /**
+     * Replaces the whole path, only needed after fixes were processed without drawing.
+     */
+    public void resetTrace(TracePath trace) {
+        if (reducedDetail)
+        {
+            return;
+        }
+        tracePoints.clear();
+        //The path is linked newest first
+        for (TracePath point = trace; point != null; point = point.getPrevious())
+        {
+            tracePoints.add(new LatLng(point.getLatitude(), point.getLongitude()));
+        }
+        Collections.reverse(tracePoints);
+        updateTrace();
+    }
+
+    public void clearTrace() {
+        if (tracePoints.isEmpty())
+        {
+            return;
+        }
+        tracePoints.clear();
+        updateTrace();
+    }
+
+    private void updateTrace() {
+        if (tracePolyline == null)
+        {
+            //A single point draws nothing, wait for the first segment
+            if (tracePoints.size() < 2)
+            {
+                return;
+            }
+            tracePolyline = googleMap.addPolyline(new PolylineOptions()
+                    .addAll(tracePoints)
+                    .width(8)
+                    .color(Color.BLUE));
+        }
+        else
+        {
+            tracePolyline.setPoints(tracePoints);
+        }
+        countRendererCall();
+    }
+
+    public void addCheckpoint(int index, LatLng latLng) {
+        if (reducedDetail)
+        {
+            return;
+        }
+        while (checkpointMarkers.size() <= index)
+        {
+            checkpointMarkers.add(null);
+        }
+        if (checkpointMarkers.get(index) != null)
+        {
+            return;
+        }
+        checkpointMarkers.set(index, googleMap.addMarker(new MarkerOptions()
+                .position(latLng)
+                .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE))));
+        countRendererCall();
+    }
+
+    public void removeCheckpoint(int index) {
+        if (index >= checkpointMarkers.size() || checkpointMarkers.get(index) == null)
+        {
+            return;
+        }
+        checkpointMarkers.get(index).remove();
+        checkpointMarkers.set(index, null);
+        countRendererCall();
+    }
+
+    public void clearCheckpoints() {
+        for (int i = 0; i < checkpointMarkers.size(); i++)
+        {
+            removeCheckpoint(i);
+        }
+        checkpointMarkers.clear();
+    }
+
+    private void countRendererCall() {
+        rendererCalls++;
+        if (callMeter != null)
+        {
+            callMeter.mark(System.currentTimeMillis());
+        }
+    }
+
+    public void setCallMeter(Metrics.Meter callMeter) {
+        this.callMeter = callMeter;
+    }
+
+    static double metresPerPixel(double latitude, float zoom) {
+        return METRES_PER_PIXEL_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+    }
+
+    public Circle getUserCircle() {
+        return userCircle;
+    }
+
+    public void setUserCircle(Circle userCircle) {
+        this.userCircle = userCircle;
+        userPosition.forget();
+    }
+
+    public Marker getTaskMarker() {
+        return taskMarker;
+    }
+
+    public void setTaskMarker(Marker taskMarker) {
+        this.taskMarker = taskMarker;
+        taskPosition.forget();
+    }
+
+    public Polyline getTracePolyline() {
+        return tracePolyline;
+    }
+
+    public long getRendererCalls() {
+        return rendererCalls;
+    }
+
+    public long getAvoidedCalls() {
+        return userPosition.getAvoidedCalls() + taskPosition.getAvoidedCalls();
+    }
+}
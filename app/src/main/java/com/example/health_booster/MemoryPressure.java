@@ -0,0 +1,78 @@
+package com.example.health_booster;
+
+import android.content.ComponentCallbacks2;
+
+/**
+ * Decides when the map drops to a degraded, lite rendering mode and when full rendering comes
+ * back. Any trim level that means the system is short of memory degrades at once, full rendering
+ * is only restored after a quiet period without such callbacks and while the system is no longer
+ * in a low memory state, so a borderline device does not flip back and forth.
+ */
+public class MemoryPressure {
+
+    //No pressure callbacks for this long before full rendering may come back
+    static final long QUIET_MILLIS = 60000;
+
+    private boolean degraded;
+    private long lastPressureMillis;
+    private int transitionCount;
+
+    /**
+     * @return true if this switched to degraded mode
+     */
+    public boolean onLowMemory(long nowMillis) {
+        return onPressure(nowMillis);
+    }
+
+    /**
+     * @return true if this switched to degraded mode
+     */
+    public boolean onTrimMemory(int level, long nowMillis) {
+        if (!isPressure(level))
+        {
+            return false;
+        }
+        return onPressure(nowMillis);
+    }
+
+    static boolean isPressure(int level) {
+        //UI_HIDDEN only means the activity went to the background, RUNNING_MODERATE is no threat yet
+        //BACKGROUND and above arrive while stopped, the map is then swapped once it is started again
+        return level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+    }
+
+    private boolean onPressure(long nowMillis) {
+        lastPressureMillis = nowMillis;
+        if (degraded)
+        {
+            return false;
+        }
+        degraded = true;
+        transitionCount++;
+        return true;
+    }
+
+    /**
+     * @param systemLowMemory whether the system still reports being low on memory
+     * @return true if this switched back to full rendering
+     */
+    public boolean checkRestore(boolean systemLowMemory, long nowMillis) {
+        if (!degraded || systemLowMemory || nowMillis - lastPressureMillis < QUIET_MILLIS)
+        {
+            return false;
+        }
+        degraded = false;
+        transitionCount++;
+        return true;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public int getTransitionCount() {
+        return transitionCount;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.health_booster;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.example.health_booster.engine.FixTrace;
+import com.example.health_booster.engine.TraceReplay;
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Replays a recorded GPX or CSV trace as if it were walked now, sped up 1 to 1000 times, for
+ * reproducible runs and end-to-end measurements on an emulator. Location requests are ignored,
+ * the trace decides when fixes arrive.
+ */
+class ReplayFixSource implements FixSource, TraceReplay.Sink, Runnable {
+
+    static final String PROVIDER = "replay";
+
+    private final TraceReplay replay;
+    private final Handler handler;
+    private final Callback callback;
+    private boolean started;
+    private long baseTimeMillis;
+    //Fixes are due at fixed offsets from the start, so a late fix does not delay the rest
+    private long dueUptimeMillis;
+
+    ReplayFixSource(FixTrace trace, double speed, Handler handler, Callback callback) {
+        this.replay = new TraceReplay(trace, speed);
+        this.handler = handler;
+        this.callback = callback;
+    }
+
+    @Override
+    public boolean requiresPermission() {
+        return false;
+    }
+
+    @Override
+    public void request(LocationRequest request) {
+        if (started)
+        {
+            return;
+        }
+        started = true;
+        //A finished trace starts over when tracking is started again
+        if (!replay.hasNext())
+        {
+            replay.rewind();
+        }
+        if (replay.getPosition() == 0)
+        {
+            baseTimeMillis = System.currentTimeMillis();
+        }
+        dueUptimeMillis = SystemClock.uptimeMillis();
+        handler.post(this);
+    }
+
+    @Override
+    public void stop() {
+        started = false;
+        handler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run() {
+        replay.deliverNext(this, baseTimeMillis);
+        if (started && replay.hasNext())
+        {
+            dueUptimeMillis += replay.getDelayToNextMillis();
+            handler.postAtTime(this, dueUptimeMillis);
+        }
+    }
+
+    @Override
+    public void onFix(double latitude, double longitude, float accuracyMetres, long timeMillis) {
+        Location location = new Location(PROVIDER);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setAccuracy(accuracyMetres);
+        location.setTime(timeMillis);
+        callback.onFix(location, false);
+    }
+
+    public TraceReplay getReplay() {
+        return replay;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.health_booster;
+
+import android.content.SharedPreferences;
+
+import com.example.health_booster.engine.Metrics;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the total score in memory and writes it behind on a background thread. Rapid updates
+ * are coalesced into a single write of the latest value, {@link #flush()} writes synchronously
+ * when the value has to be durable, e.g. in onPause.
+ */
+public class ScoreStore {
+
+    /**
+     * Where the score is persisted, {@link #store(int)} must be durable when it returns.
+     */
+    public interface Persistence {
+        int load();
+
+        void store(int score);
+    }
+
+    //One writer thread for the whole process, it must not keep the process alive
+    private static final Executor BACKGROUND_WRITER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ScoreStore");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Persistence persistence;
+    private final Executor writer;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final Runnable writeBehind = new Runnable() {
+        @Override
+        public void run() {
+            //Cleared before reading, so an update racing with this write schedules another one
+            writeScheduled.set(false);
+            writeLatest();
+        }
+    };
+
+    private volatile boolean loaded;
+    private volatile int score;
+    //Last value known to be on disk, guarded by this
+    private int storedScore;
+    private int writeCount;
+    private volatile Metrics.Meter writeMeter;
+
+    public ScoreStore(Persistence persistence) {
+        this(persistence, BACKGROUND_WRITER);
+    }
+
+    public ScoreStore(Persistence persistence, Executor writer) {
+        this.persistence = persistence;
+        this.writer = writer;
+    }
+
+    public static Persistence preferences(final SharedPreferences sharedPreferences) {
+        return new Persistence() {
+            @Override
+            public int load() {
+                return sharedPreferences.getInt("totalScore", 0);
+            }
+
+            @Override
+            public void store(int score) {
+                //Runs off the main thread, so the blocking commit is fine here
+                sharedPreferences.edit().putInt("totalScore", score).commit();
+            }
+        };
+    }
+
+    public int get() {
+        ensureLoaded();
+        return score;
+    }
+
+    public void set(int newScore) {
+        ensureLoaded();
+        score = newScore;
+        if (writeScheduled.compareAndSet(false, true))
+        {
+            writer.execute(writeBehind);
+        }
+    }
+
+    /**
+     * Writes the latest value on the calling thread if it is not on disk yet.
+     */
+    public void flush() {
+        if (loaded)
+        {
+            writeLatest();
+        }
+    }
+
+    private synchronized void writeLatest() {
+        int latest = score;
+        if (latest != storedScore)
+        {
+            persistence.store(latest);
+            storedScore = latest;
+            writeCount++;
+            Metrics.Meter meter = writeMeter;
+            if (meter != null)
+            {
+                meter.mark(System.currentTimeMillis());
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded)
+        {
+            synchronized (this)
+            {
+                if (!loaded)
+                {
+                    storedScore = persistence.load();
+                    score = storedScore;
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks every write to disk, e.g. to report disk writes per minute.
+     */
+    public void setWriteMeter(Metrics.Meter writeMeter) {
+        this.writeMeter = writeMeter;
+    }
+
+    public synchronized int getWriteCount() {
+        return writeCount;
+    }
+}
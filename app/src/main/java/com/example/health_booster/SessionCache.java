@@ -0,0 +1,99 @@
+package com.example.health_booster;
+
+import android.content.SharedPreferences;
+
+import com.example.health_booster.engine.GameTask;
+import com.example.health_booster.engine.TaskEngine;
+
+/**
+ * Last position and active task, saved when the activity stops so the next cold start can draw
+ * them before Play Services delivers a fix. Doubles are stored as their raw bits, a float would
+ * move the position by metres.
+ */
+public class SessionCache {
+
+    //A session older than this is not resumed, the user has most likely moved on
+    static final long MAX_AGE_MILLIS = 6 * 60 * 60 * 1000L;
+
+    static final String SAVED_AT = "sessionSavedAt";
+    static final String LATITUDE = "sessionLatitude";
+    static final String LONGITUDE = "sessionLongitude";
+    static final String TASK_LATITUDE = "sessionTaskLatitude";
+    static final String TASK_LONGITUDE = "sessionTaskLongitude";
+    static final String TASK_CREATED_AT = "sessionTaskCreatedAt";
+
+    private final SharedPreferences sharedPreferences;
+    private boolean loaded;
+    private double latitude;
+    private double longitude;
+    private GameTask task;
+
+    public SessionCache(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    public void save(TaskEngine taskEngine, long nowMillis) {
+        if (!taskEngine.hasPosition())
+        {
+            return;
+        }
+        SharedPreferences.Editor editor = sharedPreferences.edit()
+                .putLong(SAVED_AT, nowMillis)
+                .putLong(LATITUDE, Double.doubleToRawLongBits(taskEngine.getPosition().getLatitude()))
+                .putLong(LONGITUDE, Double.doubleToRawLongBits(taskEngine.getPosition().getLongitude()));
+        GameTask currentTask = taskEngine.getTask();
+        if (currentTask != null)
+        {
+            editor.putLong(TASK_LATITUDE, Double.doubleToRawLongBits(currentTask.getLatitude()))
+                    .putLong(TASK_LONGITUDE, Double.doubleToRawLongBits(currentTask.getLongitude()))
+                    .putLong(TASK_CREATED_AT, currentTask.getCreatedAtMillis());
+        }
+        else
+        {
+            editor.remove(TASK_LATITUDE).remove(TASK_LONGITUDE).remove(TASK_CREATED_AT);
+        }
+        //Written in the background, onStop must not wait for the disk
+        editor.apply();
+    }
+
+    /**
+     * @return false if nothing was saved or the saved session is too old to resume
+     */
+    public boolean load(long nowMillis) {
+        long savedAt = sharedPreferences.getLong(SAVED_AT, 0);
+        if (!sharedPreferences.contains(LATITUDE) || nowMillis - savedAt > MAX_AGE_MILLIS || savedAt > nowMillis)
+        {
+            return false;
+        }
+        latitude = Double.longBitsToDouble(sharedPreferences.getLong(LATITUDE, 0));
+        longitude = Double.longBitsToDouble(sharedPreferences.getLong(LONGITUDE, 0));
+        task = null;
+        if (sharedPreferences.contains(TASK_LATITUDE))
+        {
+            task = new GameTask(Double.longBitsToDouble(sharedPreferences.getLong(TASK_LATITUDE, 0)),
+                    Double.longBitsToDouble(sharedPreferences.getLong(TASK_LONGITUDE, 0)),
+                    sharedPreferences.getLong(TASK_CREATED_AT, savedAt));
+        }
+        loaded = true;
+        return true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the task active when the session was saved, null if there was none
+     */
+    public GameTask getTask() {
+        return task;
+    }
+}
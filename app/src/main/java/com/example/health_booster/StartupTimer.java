@@ -0,0 +1,35 @@
+package com.example.health_booster;
+
+/**
+ * Measures a cold start from onCreate to the first user circle on the map. Only the first circle
+ * is recorded, later calls are ignored. The time to the first fix is measured by the service,
+ * which knows when updates were requested and which locations are cached.
+ */
+public class StartupTimer {
+
+    private final long startMillis;
+    private long firstCircleMillis = -1;
+
+    public StartupTimer(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * @return true if this was the first circle
+     */
+    public boolean onFirstCircle(long nowMillis) {
+        if (firstCircleMillis >= 0)
+        {
+            return false;
+        }
+        firstCircleMillis = nowMillis - startMillis;
+        return true;
+    }
+
+    /**
+     * @return milliseconds from start to the first circle, -1 if there was none yet
+     */
+    public long getTimeToFirstCircle() {
+        return firstCircleMillis;
+    }
+}
@@ -0,0 +1,944 @@
+package com.example.health_booster;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import com.example.health_booster.engine.FixTrace;
+import com.example.health_booster.engine.GameLoop;
+import com.example.health_booster.engine.GameSnapshot;
+import com.example.health_booster.engine.GameTask;
+import com.example.health_booster.engine.HistoryLog;
+import com.example.health_booster.engine.HttpLeaderboardBackend;
+import com.example.health_booster.engine.LeaderboardBackend;
+import com.example.health_booster.engine.LocationFilter;
+import com.example.health_booster.engine.LocationScheduler;
+import com.example.health_booster.engine.Metrics;
+import com.example.health_booster.engine.PoiIndex;
+import com.example.health_booster.engine.PoiTaskGenerator;
+import com.example.health_booster.engine.RandomTaskGenerator;
+import com.example.health_booster.engine.ScoreSync;
+import com.example.health_booster.engine.StatsRollup;
+import com.example.health_booster.engine.TaskEngine;
+import com.example.health_booster.engine.TaskGenerator;
+import com.google.android.gms.location.LocationRequest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns the location subscription and the game: the task engine, scoring, workout history and
+ * the location policy. It runs in the foreground while a walk is tracked, so rotating the screen,
+ * leaving the app or turning the screen off does not stop tracking. The activity binds to it
+ * only to display the game.
+ * <p>
+ * Fixes are delivered to and processed on a game thread, which owns the engine, the location
+ * policy and the history. The main thread only starts and stops tracking and renders the
+ * {@link GameSnapshot}s the game thread publishes.
+ */
+public class TrackingService extends Service implements TaskEngine.Listener {
+
+    private static final String TAG = "TrackingService";
+    //Notification action, stops tracking until the app is opened again
+    static final String ACTION_STOP = "com.example.health_booster.action.STOP_TRACKING";
+    private static final String CHANNEL_ID = "tracking";
+    private static final int NOTIFICATION_ID = 1;
+    //Optional bundled points of interest, tasks are placed at them when present
+    private static final String POI_ASSET = "poi.bin";
+    //Mixed into the task seed for placing tasks at points of interest, so it does not draw the fallback's numbers
+    private static final long POI_SEED_SALT = 0x504f4953454544L;
+    //Same file as the activity used before tracking moved here, so scores carry over
+    static final String PREFERENCES_NAME = "MainActivity";
+    //Stored with the score: history records the leaderboard has, and who this device is to it
+    private static final String KEY_SYNC_CURSOR = "sync_cursor";
+    private static final String KEY_DEVICE_ID = "device_id";
+    //New scores wait a while for others, so one radio wakeup uploads several, or go once there are enough
+    private static final long SYNC_DELAY_MILLIS = 5 * 60 * 1000;
+    private static final int SYNC_BATCH_SCORES = 10;
+    //Daily totals for the dashboards, written with the history
+    private static final String STATS_FILE = "stats.bin";
+
+    /**
+     * What the bound activity is told on the main thread, it renders the game but never changes
+     * it directly.
+     */
+    public interface Display extends TaskEngine.Listener {
+        /**
+         * A newer snapshot was published, the ones published while this was pending are skipped.
+         *
+         * @param fixReceivedNanos System.nanoTime() when the latest fix reached the service, 0 if none did
+         */
+        void onSnapshot(GameSnapshot snapshot, long fixReceivedNanos);
+
+        void onScoreChanged(int score);
+    }
+
+    private interface DisplayCall {
+        void on(Display display);
+    }
+
+    public class LocalBinder extends Binder {
+        public TrackingService getService() {
+            return TrackingService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //The game thread owns the engine, the history and the location policy
+    private HandlerThread gameThread;
+    private Handler gameHandler;
+    private GameLoop gameLoop;
+    private TaskEngine taskEngine;
+    private RandomTaskGenerator taskGenerator;
+    private PoiIndex poiIndex;
+    private volatile boolean destroyed;
+    private ScoreStore scoreStore;
+    private HistoryLog historyLog;
+    //Position and task of the last session, resumed when the process was restarted
+    private SessionCache sessionCache;
+    private volatile Display display;
+    //At most one snapshot delivery waits on the main thread, it takes the latest when it runs
+    private final AtomicBoolean snapshotPosted = new AtomicBoolean();
+    private volatile long fixReceivedNanos;
+    private final Runnable deliverSnapshot = new Runnable() {
+        @Override
+        public void run() {
+            snapshotPosted.set(false);
+            Display current = display;
+            if (current != null)
+            {
+                current.onSnapshot(gameLoop.getSnapshot(), fixReceivedNanos);
+            }
+        }
+    };
+
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Histogram fixAgeMillis = metrics.histogram("fix.age.ms", Metrics.exponentialBounds(10, 2, 16));
+    private final Metrics.Counter filteredFixes = metrics.counter("fixes.filtered");
+    private final Metrics.Counter scoreUpdates = metrics.counter("score.updates");
+    private final Metrics.Meter diskWrites = metrics.meter("disk.writes");
+    //Fused location provider calls, the map's own Play Services calls are counted by the activity
+    private final Metrics.Counter locationServicesCalls = metrics.counter("location.services.calls");
+    private final Metrics.Meter syncUploads = metrics.meter("sync.uploads");
+    private final Metrics.Counter syncFailures = metrics.counter("sync.failures");
+
+    //Completions reach the team leaderboard from the history, null in builds without a server
+    private final LeaderboardBackend leaderboard = createLeaderboard();
+    //Game thread only, per-day totals updated on every completion and skip
+    private final StatsRollup statsRollup = new StatsRollup();
+    //Game thread only, null without history or leaderboard
+    private ScoreSync scoreSync;
+    private int storedSyncCursor;
+    private String deviceId;
+    private SharedPreferences sharedPreferences;
+    //Uploads block, so they run here and report back to the game thread
+    private ExecutorService syncExecutor;
+    private final Runnable syncScores = this::syncScores;
+    //Game thread only, scores recorded since the last sync ran
+    private int scoresSinceSync;
+    //Offline for a while, a pending retry goes out as soon as there is a network again
+    private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            NetworkInfo network = ((ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE)).getActiveNetworkInfo();
+            if (network != null && network.isConnected())
+            {
+                gameHandler.post(() -> {
+                    if (scoreSync != null)
+                    {
+                        scoreSync.onConnected(SystemClock.elapsedRealtime());
+                        syncScores();
+                    }
+                });
+            }
+        }
+    };
+
+    //Per-fix updates while the activity is displayed, batched while nothing is on screen
+    private volatile FixSource fixSource;
+    private LocationRequest locationRequest;
+    private volatile boolean requestingLocationUpdates;
+    //Written on the main thread only
+    private volatile boolean foreground;
+    //From the first location request to the first fresh fix, the cached location does not count
+    private long updatesRequestedMillis = -1;
+    private volatile long timeToFirstFixMillis = -1;
+    //Chooses the location request from the distance to the task
+    private final LocationScheduler locationScheduler = new LocationScheduler();
+    //Called on the game thread, fix sources deliver there
+    private final FixSource.Callback fixCallback = (location, lastKnown) -> {
+        if (!lastKnown && timeToFirstFixMillis < 0 && updatesRequestedMillis >= 0)
+        {
+            timeToFirstFixMillis = SystemClock.elapsedRealtime() - updatesRequestedMillis;
+            Log.i(TAG, "Time to first fix " + timeToFirstFixMillis + " ms");
+        }
+        //A cached location is only worth showing while there is nothing fresher
+        if (!lastKnown || !taskEngine.hasPosition())
+        {
+            processLocation(location);
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        gameThread = new HandlerThread("GameLoop");
+        gameThread.start();
+        gameHandler = new Handler(gameThread.getLooper());
+        gameLoop = new GameLoop(this, gameHandler::post);
+        taskEngine = gameLoop.getEngine();
+        gameLoop.setObserver(snapshot -> {
+            if (display != null && snapshotPosted.compareAndSet(false, true))
+            {
+                mainHandler.post(deliverSnapshot);
+            }
+        });
+
+        sharedPreferences = getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        scoreStore = new ScoreStore(ScoreStore.preferences(sharedPreferences));
+        scoreStore.setWriteMeter(diskWrites);
+        sessionCache = new SessionCache(sharedPreferences);
+        //Resume the task of the last session, also after the system restarted the service
+        if (sessionCache.load(System.currentTimeMillis()) && sessionCache.getTask() != null)
+        {
+            final GameTask task = sessionCache.getTask();
+            gameLoop.execute(() -> taskEngine.setTask(task));
+        }
+
+        //Open workout history, the game still works without it
+        try
+        {
+            historyLog = new HistoryLog(new File(getFilesDir(), "history.log"));
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Workout history unavailable", e);
+        }
+        if (historyLog != null && leaderboard != null)
+        {
+            initialiseScoreSync();
+        }
+        gameHandler.post(this::loadStats);
+
+        //Smooth fixes before they reach the game, jitter then causes no map work
+        gameLoop.execute(() -> taskEngine.setLocationFilter(new LocationFilter()));
+        //Nothing is displayed until an activity attaches
+        locationScheduler.setBatched(true, SystemClock.elapsedRealtime());
+        locationRequest = createLocationRequest(locationScheduler.getPolicy(), locationScheduler.getMaxWaitMillis());
+    }
+
+    /**
+     * The team leaderboard server set by the build's LEADERBOARD_URL, null in builds without one.
+     * Nothing is synced then and the persisted cursor stays where it is, so every score in the
+     * history is sent once a build with a server runs.
+     */
+    private static LeaderboardBackend createLeaderboard() {
+        return BuildConfig.LEADERBOARD_URL.isEmpty() ? null : new HttpLeaderboardBackend(BuildConfig.LEADERBOARD_URL);
+    }
+
+    private void initialiseScoreSync() {
+        storedSyncCursor = sharedPreferences.getInt(KEY_SYNC_CURSOR, 0);
+        scoreSync = new ScoreSync(historyLog, storedSyncCursor, System.nanoTime());
+        deviceId = sharedPreferences.getString(KEY_DEVICE_ID, null);
+        if (deviceId == null)
+        {
+            deviceId = UUID.randomUUID().toString();
+            sharedPreferences.edit().putString(KEY_DEVICE_ID, deviceId).apply();
+        }
+        syncExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "ScoreSync"));
+        //Sticky, so this also syncs what an earlier session left behind if there is a network now
+        registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        gameHandler.post(syncScores);
+    }
+
+    private void loadStats() {
+        File file = new File(getFilesDir(), STATS_FILE);
+        if (!file.exists())
+        {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            statsRollup.readFrom(in);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Statistics unavailable, starting over", e);
+        }
+    }
+
+    private void storeStats() {
+        if (!statsRollup.isDirty())
+        {
+            return;
+        }
+        //Written aside and renamed, so a crash leaves the previous totals
+        File file = new File(getFilesDir(), STATS_FILE);
+        File temporary = new File(getFilesDir(), STATS_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))))
+        {
+            statsRollup.writeTo(out);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Writing statistics failed", e);
+            return;
+        }
+        if (!temporary.renameTo(file))
+        {
+            Log.w(TAG, "Replacing statistics failed");
+            return;
+        }
+        diskWrites.mark(System.currentTimeMillis());
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        initialiseTaskGenerator(intent);
+        initialiseFixSource(intent);
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction()))
+        {
+            stopTracking();
+            return START_NOT_STICKY;
+        }
+        initialiseTaskGenerator(intent);
+        initialiseFixSource(intent);
+        //A null intent means the system restarted the service, pick the walk up again
+        startTracking();
+        return START_STICKY;
+    }
+
+    private void initialiseTaskGenerator(Intent intent) {
+        if (taskGenerator != null)
+        {
+            return;
+        }
+        //Seeded task generation, the logged seed reproduces a bug report's tasks exactly
+        long taskSeed = intent != null ? intent.getLongExtra(MainActivity.EXTRA_TASK_SEED, System.nanoTime()) : System.nanoTime();
+        final RandomTaskGenerator generator = new RandomTaskGenerator(taskSeed);
+        taskGenerator = generator;
+        Log.i(TAG, "Task seed " + taskSeed);
+        //Decided on the game thread before the first fix is, so the same seed always places the same tasks
+        gameLoop.execute(() -> taskEngine.setTaskGenerator(createTaskGenerator(generator, taskSeed)));
+    }
+
+    private void initialiseFixSource(Intent intent) {
+        if (fixSource != null)
+        {
+            return;
+        }
+        //A recorded trace replaces the fused provider, e.g. for measurements on an emulator
+        String tracePath = intent != null ? intent.getStringExtra(MainActivity.EXTRA_REPLAY_TRACE) : null;
+        if (tracePath != null)
+        {
+            float speed = intent.getFloatExtra(MainActivity.EXTRA_REPLAY_SPEED, 1);
+            try
+            {
+                FixTrace trace = FixTrace.read(new File(tracePath));
+                fixSource = new ReplayFixSource(trace, speed, gameHandler, fixCallback);
+                Log.i(TAG, "Replaying " + trace.size() + " fixes from " + tracePath + " at " + speed + "x");
+                return;
+            }
+            catch (IOException | IllegalArgumentException e)
+            {
+                Log.w(TAG, "Cannot replay " + tracePath, e);
+            }
+        }
+        FusedFixSource fusedFixSource = new FusedFixSource(this, gameThread.getLooper(), fixCallback);
+        fusedFixSource.setCallCounter(locationServicesCalls);
+        fixSource = fusedFixSource;
+    }
+
+    /**
+     * Places tasks at points of interest if the dataset is bundled, randomly otherwise. Game thread only.
+     */
+    private TaskGenerator createTaskGenerator(RandomTaskGenerator random, long taskSeed) {
+        try
+        {
+            PoiIndex index = new PoiIndex(copyPoiAsset());
+            poiIndex = index;
+            Log.i(TAG, index.size() + " points of interest loaded");
+            return new PoiTaskGenerator(index, taskSeed ^ POI_SEED_SALT, random);
+        }
+        catch (IOException e)
+        {
+            //No dataset bundled, random placement only
+            Log.i(TAG, "Points of interest unavailable: " + e.getMessage());
+            return random;
+        }
+    }
+
+    /**
+     * Memory mapping needs a real file, the asset is copied once per installed version of the app.
+     */
+    private File copyPoiAsset() throws IOException {
+        File file = new File(getFilesDir(), POI_ASSET);
+        long installedMillis;
+        try
+        {
+            installedMillis = getPackageManager().getPackageInfo(getPackageName(), 0).lastUpdateTime;
+        }
+        catch (PackageManager.NameNotFoundException e)
+        {
+            installedMillis = Long.MAX_VALUE;
+        }
+        //Copied before the app was last updated, the bundled dataset may have changed since
+        if (file.exists() && file.lastModified() >= installedMillis)
+        {
+            return file;
+        }
+        File partial = new File(getFilesDir(), POI_ASSET + ".tmp");
+        try (InputStream in = getAssets().open(POI_ASSET);
+             OutputStream out = new FileOutputStream(partial))
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+            {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (!partial.renameTo(file))
+        {
+            throw new IOException("Cannot rename " + partial);
+        }
+        diskWrites.mark(System.currentTimeMillis());
+        return file;
+    }
+
+    private static void closeQuietly(PoiIndex index) {
+        try
+        {
+            index.close();
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Closing points of interest failed", e);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        destroyed = true;
+        display = null;
+        if (scoreSync != null)
+        {
+            unregisterReceiver(connectivityReceiver);
+        }
+        //Runs after everything queued on the game thread, then ends it
+        gameHandler.post(this::releaseGame);
+        super.onDestroy();
+    }
+
+    private void releaseGame() {
+        stopLocationUpdates();
+        sessionCache.save(taskEngine, System.currentTimeMillis());
+        scoreStore.flush();
+        storeStats();
+        if (scoreSync != null)
+        {
+            //A batch still uploading is sent again next time, the backend counts it once
+            syncExecutor.shutdown();
+            storeSyncCursor();
+            scoreSync = null;
+        }
+        if (historyLog != null)
+        {
+            try
+            {
+                historyLog.close();
+            }
+            catch (IOException e)
+            {
+                Log.w(TAG, "Closing workout history failed", e);
+            }
+            historyLog = null;
+        }
+        if (poiIndex != null)
+        {
+            closeQuietly(poiIndex);
+            poiIndex = null;
+        }
+        //quitSafely() needs API 18, nothing queued after this is needed anymore
+        gameThread.quit();
+    }
+
+    /**
+     * Stops telling the given display about the game while tracking goes on unchanged, for an
+     * activity destroyed by a configuration change whose successor attaches right after.
+     */
+    public void detachDisplay(Display display) {
+        if (this.display == display)
+        {
+            this.display = null;
+        }
+    }
+
+    /**
+     * Shows the game on the given display, it is then told about every new snapshot and all game events.
+     */
+    public void attach(Display display) {
+        this.display = display;
+        //Fixes processed while nothing read the snapshots are not in the latest one yet
+        gameLoop.refresh();
+        gameHandler.post(() -> {
+            if (locationScheduler.setBatched(false, SystemClock.elapsedRealtime()))
+            {
+                applyLocationPolicy();
+            }
+        });
+    }
+
+    /**
+     * Nothing is displayed anymore, a walk in progress goes on with batched fixes, otherwise tracking stops.
+     */
+    public void detach() {
+        display = null;
+        scoreStore.flush();
+        gameHandler.post(() -> {
+            flushHistory();
+            sessionCache.save(taskEngine, System.currentTimeMillis());
+            if (requestingLocationUpdates && taskEngine.getTask() != null)
+            {
+                if (locationScheduler.setBatched(true, SystemClock.elapsedRealtime()))
+                {
+                    applyLocationPolicy();
+                }
+            }
+            else
+            {
+                mainHandler.post(this::stopTracking);
+            }
+        });
+    }
+
+    /**
+     * Subscribes to location updates in the foreground, does nothing without location permission.
+     */
+    public void startTracking() {
+        if (fixSource.requiresPermission() && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED)
+        {
+            return;
+        }
+        //Started as well as bound, so tracking outlives the activity
+        if (!foreground)
+        {
+            foreground = true;
+            ContextCompat.startForegroundService(this, new Intent(this, TrackingService.class));
+            startForeground(NOTIFICATION_ID, buildNotification());
+        }
+        gameHandler.post(() -> {
+            if (!requestingLocationUpdates)
+            {
+                requestingLocationUpdates = true;
+                if (updatesRequestedMillis < 0)
+                {
+                    updatesRequestedMillis = SystemClock.elapsedRealtime();
+                }
+                fixSource.request(locationRequest);
+            }
+        });
+    }
+
+    public void stopTracking() {
+        //A stop posted by detach() may arrive after the game thread ended
+        if (destroyed)
+        {
+            return;
+        }
+        gameHandler.post(this::stopLocationUpdates);
+        flush();
+        if (foreground)
+        {
+            foreground = false;
+            stopForeground(true);
+        }
+        //Destroyed once the activity unbinds, right away if none is bound
+        stopSelf();
+    }
+
+    private void stopLocationUpdates() {
+        if (requestingLocationUpdates)
+        {
+            fixSource.stop();
+            requestingLocationUpdates = false;
+        }
+    }
+
+    private void applyLocationPolicy() {
+        locationRequest = createLocationRequest(locationScheduler.getPolicy(), locationScheduler.getMaxWaitMillis());
+        if (requestingLocationUpdates && (!fixSource.requiresPermission() || ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED))
+        {
+            fixSource.request(locationRequest);
+        }
+    }
+
+    private static LocationRequest createLocationRequest(LocationScheduler.Policy policy, long maxWaitMillis) {
+        int priority;
+        switch (policy.getAccuracy())
+        {
+            case HIGH:
+                priority = LocationRequest.PRIORITY_HIGH_ACCURACY;
+                break;
+            case BALANCED:
+                priority = LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+                break;
+            default:
+                priority = LocationRequest.PRIORITY_LOW_POWER;
+                break;
+        }
+        return LocationRequest.create()
+                .setInterval(policy.getIntervalMillis())
+                .setFastestInterval(policy.getFastestIntervalMillis())
+                .setSmallestDisplacement(policy.getMinDisplacementMetres())
+                .setMaxWaitTime(maxWaitMillis)
+                .setPriority(priority);
+    }
+
+    /**
+     * Runs a fix from another source through the game, callable from any thread.
+     */
+    public void onLocation(@NonNull final Location location) {
+        gameHandler.post(() -> processLocation(location));
+    }
+
+    /**
+     * Runs one fix through the game on the game thread, generating the first task or completing the current one.
+     */
+    private void processLocation(Location location) {
+        fixReceivedNanos = System.nanoTime();
+        //Replayed fixes keep the recording's 1x timeline for the game, their age says nothing
+        if (!ReplayFixSource.PROVIDER.equals(location.getProvider()))
+        {
+            fixAgeMillis.record(System.currentTimeMillis() - location.getTime());
+        }
+        boolean changed = gameLoop.onFix(location.getLatitude(), location.getLongitude(), location.getAccuracy(), location.getTime());
+        if (!changed)
+        {
+            filteredFixes.increment();
+        }
+        //Adapt the location request to how far away the (possibly new) task is
+        if (changed && taskEngine.getTask() != null)
+        {
+            if (locationScheduler.update(taskEngine.distanceToTaskMetres(), location.getSpeed(), SystemClock.elapsedRealtime()))
+            {
+                applyLocationPolicy();
+            }
+        }
+    }
+
+    /**
+     * Writes the score to disk right away and the history on the game thread, if they are not there yet.
+     */
+    public void flush() {
+        scoreStore.flush();
+        gameHandler.post(this::flushHistory);
+    }
+
+    private void flushHistory() {
+        if (historyLog != null)
+        {
+            historyLog.flush();
+            diskWrites.mark(System.currentTimeMillis());
+        }
+        storeStats();
+    }
+
+    private void addScore(int points) {
+        final int score = scoreStore.get() + points;
+        scoreStore.set(score);
+        scoreUpdates.increment();
+        postToDisplay(current -> current.onScoreChanged(score));
+        //The notification shows the score while the screen is off
+        if (foreground)
+        {
+            NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager.notify(NOTIFICATION_ID, buildNotification());
+        }
+    }
+
+    private Notification buildNotification() {
+        NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && notificationManager.getNotificationChannel(CHANNEL_ID) == null)
+        {
+            notificationManager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.tracking_channel), NotificationManager.IMPORTANCE_LOW));
+        }
+        PendingIntent openIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+        PendingIntent stopIntent = PendingIntent.getService(this, 1,
+                new Intent(this, TrackingService.class).setAction(ACTION_STOP), PendingIntent.FLAG_UPDATE_CURRENT);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.tracking_notification, scoreStore.get()))
+                .setContentIntent(openIntent)
+                .addAction(0, getString(R.string.stop_tracking), stopIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+
+    @Override
+    public void onTaskGenerated(GameTask task) {
+        recordHistory(HistoryLog.TYPE_GENERATED, task);
+        postToDisplay(current -> current.onTaskGenerated(task));
+    }
+
+    @Override
+    public void onTaskCompleted(GameTask task) {
+        addScore(1);
+        recordHistory(HistoryLog.TYPE_COMPLETED, task);
+        long now = System.currentTimeMillis();
+        statsRollup.onCompleted(today(now), now - task.getCreatedAtMillis(), taskEngine.getWalkedMetres());
+        scheduleSync();
+        postToDisplay(current -> current.onTaskCompleted(task));
+    }
+
+    @Override
+    public void onTaskSkipped(GameTask task) {
+        recordHistory(HistoryLog.TYPE_SKIPPED, task);
+        statsRollup.onSkipped(today(System.currentTimeMillis()), taskEngine.getWalkedMetres());
+        postToDisplay(current -> current.onTaskSkipped(task));
+    }
+
+    @Override
+    public void onCheckpointReached(int index, GameTask checkpoint) {
+        //Every checkpoint scores on its own, the single task keeps going alongside
+        addScore(MainActivity.CHECKPOINT_POINTS);
+        recordHistory(HistoryLog.TYPE_CHECKPOINT, checkpoint);
+        scheduleSync();
+        postToDisplay(current -> current.onCheckpointReached(index, checkpoint));
+    }
+
+    private static int today(long nowMillis) {
+        //Days end at local midnight, daylight saving time included
+        return StatsRollup.dayOf(nowMillis, TimeZone.getDefault().getOffset(nowMillis));
+    }
+
+    private void postToDisplay(final DisplayCall call) {
+        mainHandler.post(() -> {
+            //Detached meanwhile, the next display catches up from the snapshot
+            Display current = display;
+            if (current != null)
+            {
+                call.on(current);
+            }
+        });
+    }
+
+    /**
+     * A score was recorded, it is synced with the ones that follow within {@link #SYNC_DELAY_MILLIS}.
+     */
+    private void scheduleSync() {
+        if (scoreSync == null)
+        {
+            return;
+        }
+        scoresSinceSync++;
+        if (scoresSinceSync >= SYNC_BATCH_SCORES)
+        {
+            syncScores();
+        }
+        else if (scoresSinceSync == 1)
+        {
+            gameHandler.postDelayed(syncScores, SYNC_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Sends the next batch of scores to the leaderboard if one is due, on the game thread only.
+     */
+    private void syncScores() {
+        gameHandler.removeCallbacks(syncScores);
+        scoresSinceSync = 0;
+        if (scoreSync == null)
+        {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        final ScoreSync.Batch batch;
+        try
+        {
+            batch = scoreSync.nextBatch(now);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Reading scores to sync failed", e);
+            return;
+        }
+        storeSyncCursor();
+        if (batch == null)
+        {
+            //Backing off, new scores and a regained network retry earlier
+            if (!scoreSync.isInFlight() && scoreSync.getPendingCount() > 0)
+            {
+                gameHandler.postDelayed(syncScores, scoreSync.getNextAttemptMillis() - now);
+            }
+            return;
+        }
+        syncExecutor.execute(() -> {
+            boolean uploaded;
+            try
+            {
+                leaderboard.upload(deviceId, batch.getData());
+                uploaded = true;
+            }
+            catch (IOException e)
+            {
+                Log.i(TAG, "Score sync failed, " + batch.getEventCount() + " scores retried later: " + e.getMessage());
+                uploaded = false;
+            }
+            final boolean stored = uploaded;
+            gameHandler.post(() -> onSyncResult(batch, stored));
+        });
+    }
+
+    private void onSyncResult(ScoreSync.Batch batch, boolean uploaded) {
+        if (scoreSync == null)
+        {
+            return;
+        }
+        if (uploaded)
+        {
+            scoreSync.onUploaded(batch);
+            syncUploads.mark(System.currentTimeMillis(), batch.getEventCount());
+        }
+        else
+        {
+            scoreSync.onFailed(batch, SystemClock.elapsedRealtime());
+            syncFailures.increment();
+        }
+        syncScores();
+    }
+
+    private void storeSyncCursor() {
+        int cursor = scoreSync.getUploadedCount();
+        if (cursor != storedSyncCursor)
+        {
+            storedSyncCursor = cursor;
+            sharedPreferences.edit().putInt(KEY_SYNC_CURSOR, cursor).apply();
+        }
+    }
+
+    private void recordHistory(int type, GameTask task) {
+        if (historyLog == null)
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try
+        {
+            historyLog.append(type, now, now - task.getCreatedAtMillis(), task.getLatitude(), task.getLongitude(),
+                    taskEngine.getPosition().getLatitude(), taskEngine.getPosition().getLongitude(), taskEngine.getWalkedMetres());
+            diskWrites.mark(now);
+        }
+        catch (IOException e)
+        {
+            Log.w(TAG, "Writing workout history failed", e);
+        }
+    }
+
+    public GameLoop getGameLoop() {
+        return gameLoop;
+    }
+
+    public ScoreStore getScoreStore() {
+        return scoreStore;
+    }
+
+    public HistoryLog getHistoryLog() {
+        return historyLog;
+    }
+
+    public SessionCache getSessionCache() {
+        return sessionCache;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Daily, weekly and monthly totals, to be used on the game thread only, e.g. through
+     * {@link GameLoop#execute(Runnable)}.
+     */
+    public StatsRollup getStatsRollup() {
+        return statsRollup;
+    }
+
+    public Metrics.Counter getLocationServicesCalls() {
+        return locationServicesCalls;
+    }
+
+    /**
+     * @return milliseconds from requesting location updates to the first fresh fix, -1 if there was none yet
+     */
+    public long getTimeToFirstFixMillis() {
+        return timeToFirstFixMillis;
+    }
+
+    public long getTaskSeed() {
+        return taskGenerator.getSeed();
+    }
+
+    public LocationScheduler getLocationScheduler() {
+        return locationScheduler;
+    }
+
+    public LocationRequest getLocationRequest() {
+        return locationRequest;
+    }
+
+    public FixSource getFixSource() {
+        return fixSource;
+    }
+
+    public boolean isRequestingLocationUpdates() {
+        return requestingLocationUpdates;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.health_booster;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FollowCameraControllerTest {
+
+    //Half the height and width of the visible region
+    private static final double SPAN = 0.005;
+
+    //Records camera calls, the visible region is what the test last showed
+    private static class FakeCamera implements FollowCameraController.Camera {
+        final List<LatLng> moves = new ArrayList<>();
+        final List<LatLng> animations = new ArrayList<>();
+        LatLngBounds bounds;
+
+        void show(double latitude, double longitude) {
+            bounds = new LatLngBounds(new LatLng(latitude - SPAN, longitude - SPAN), new LatLng(latitude + SPAN, longitude + SPAN));
+        }
+
+        @Override
+        public void moveTo(LatLng target) {
+            moves.add(target);
+        }
+
+        @Override
+        public void animateTo(LatLng target, GoogleMap.CancelableCallback callback) {
+            animations.add(target);
+        }
+
+        @Override
+        public LatLngBounds getVisibleBounds() {
+            return bounds;
+        }
+    }
+
+    private static class FakeScheduler implements FollowCameraController.Scheduler {
+        Runnable pending;
+        long delayMillis;
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMillis) {
+            pending = runnable;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            if (pending == runnable)
+            {
+                pending = null;
+            }
+        }
+    }
+
+    private final FakeCamera camera = new FakeCamera();
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final FollowCameraController controller = new FollowCameraController(camera, scheduler);
+
+    private void showAround(double latitude, double longitude) {
+        camera.show(latitude, longitude);
+        controller.onCameraIdle();
+    }
+
+    @Test
+    public void insideInnerBox() {
+        //Visible region 22.30..22.31 x 114.17..114.18, inner half is 22.3025..22.3075 x 114.1725..114.1775
+        assertTrue(FollowCameraController.insideInnerBox(22.305, 114.175, 22.30, 114.17, 22.31, 114.18, 0.5));
+        assertFalse(FollowCameraController.insideInnerBox(22.302, 114.175, 22.30, 114.17, 22.31, 114.18, 0.5));
+        assertFalse(FollowCameraController.insideInnerBox(22.305, 114.179, 22.30, 114.17, 22.31, 114.18, 0.5));
+        assertTrue(FollowCameraController.insideInnerBox(22.302, 114.175, 22.30, 114.17, 22.31, 114.18, 0.9));
+    }
+
+    @Test
+    public void insideInnerBoxAcrossAntimeridian() {
+        assertTrue(FollowCameraController.insideInnerBox(0, 180, -1, 179, 1, -179, 0.5));
+        assertTrue(FollowCameraController.insideInnerBox(0, -179.8, -1, 179, 1, -179, 0.5));
+        assertFalse(FollowCameraController.insideInnerBox(0, 179.1, -1, 179, 1, -179, 0.5));
+    }
+
+    @Test
+    public void fixesDuringAnimationAreCoalesced() {
+        //Nothing on screen yet, the first fix jumps there
+        controller.onUserPosition(new LatLng(22.305, 114.175));
+        assertEquals(1, camera.moves.size());
+        showAround(22.305, 114.175);
+        controller.onUserPosition(new LatLng(22.306, 114.175));
+        assertTrue(camera.animations.isEmpty());
+
+        controller.onUserPosition(new LatLng(22.309, 114.175));
+        assertEquals(1, camera.animations.size());
+        //The animation runs, only the latest of these is followed up
+        controller.onUserPosition(new LatLng(22.312, 114.175));
+        controller.onUserPosition(new LatLng(22.315, 114.175));
+        controller.onUserPosition(new LatLng(22.320, 114.175));
+        assertEquals(1, camera.animations.size());
+        assertEquals(2, controller.getCoalescedCount());
+
+        showAround(22.309, 114.175);
+        assertEquals(2, camera.animations.size());
+        assertEquals(22.320, camera.animations.get(1).latitude, 0);
+        assertEquals(3, controller.getRecenterCount());
+        //Settled there, nothing left to follow up
+        showAround(22.320, 114.175);
+        assertEquals(2, camera.animations.size());
+    }
+
+    @Test
+    public void followingResumesFiveSecondsAfterGesture() {
+        showAround(22.305, 114.175);
+        //Moves the camera makes itself are no gesture
+        controller.onCameraMoveStarted(GoogleMap.OnCameraMoveStartedListener.REASON_DEVELOPER_ANIMATION);
+        assertFalse(controller.isUserPanning());
+
+        controller.onCameraMoveStarted(GoogleMap.OnCameraMoveStartedListener.REASON_GESTURE);
+        assertTrue(controller.isUserPanning());
+        controller.onUserPosition(new LatLng(22.309, 114.175));
+        assertTrue(camera.animations.isEmpty());
+        //Panned somewhere else, the wait starts once the map is idle
+        showAround(22.400, 114.175);
+        assertNotNull(scheduler.pending);
+        assertEquals(FollowCameraController.RESUME_DELAY_MILLIS, scheduler.delayMillis);
+
+        //Another gesture within the delay starts it over
+        controller.onCameraMoveStarted(GoogleMap.OnCameraMoveStartedListener.REASON_GESTURE);
+        assertNull(scheduler.pending);
+        controller.onUserPosition(new LatLng(22.310, 114.175));
+        showAround(22.410, 114.175);
+        assertNotNull(scheduler.pending);
+        assertTrue(camera.animations.isEmpty());
+
+        //Five seconds later the camera goes back to the latest fix
+        scheduler.pending.run();
+        assertFalse(controller.isUserPanning());
+        assertEquals(1, camera.animations.size());
+        assertEquals(22.310, camera.animations.get(0).latitude, 0);
+
+        controller.release();
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.health_booster;
+
+import android.view.Choreographer;
+
+import com.example.health_booster.engine.GameLoop;
+import com.example.health_booster.engine.GameSnapshot;
+import com.example.health_booster.engine.RandomTaskGenerator;
+import com.example.health_booster.engine.TaskEngine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameStateStoreTest {
+
+    private final List<Choreographer.FrameCallback> posted = new ArrayList<>();
+    private final List<GameSnapshot> renderedFrom = new ArrayList<>();
+    private final List<GameSnapshot> renderedTo = new ArrayList<>();
+    private final List<Integer> renderedScores = new ArrayList<>();
+    private boolean ready = true;
+
+    private final FrameStateStore.Renderer renderer = new FrameStateStore.Renderer() {
+        @Override
+        public boolean renderSnapshot(GameSnapshot previous, GameSnapshot snapshot, long fixReceivedNanos) {
+            if (!ready)
+            {
+                return false;
+            }
+            renderedFrom.add(previous);
+            renderedTo.add(snapshot);
+            return true;
+        }
+
+        @Override
+        public void renderScore(int score) {
+            renderedScores.add(score);
+        }
+    };
+
+    private final FrameStateStore store = new FrameStateStore(renderer, posted::add);
+
+    private final GameLoop loop = new GameLoop(new TaskEngine.Listener() {
+    }, new RandomTaskGenerator(7), Runnable::run);
+
+    private GameSnapshot fix(double latitude, long timeMillis) {
+        loop.submitFix(latitude, 114.17, 0, timeMillis);
+        return loop.getSnapshot();
+    }
+
+    private void frame() {
+        List<Choreographer.FrameCallback> callbacks = new ArrayList<>(posted);
+        posted.clear();
+        for (Choreographer.FrameCallback callback : callbacks) {
+            callback.doFrame(0);
+        }
+    }
+
+    @Test
+    public void snapshotsBetweenFramesRenderOnce() {
+        GameSnapshot first = fix(22.3, 0);
+        store.setSnapshot(first, 1);
+        store.setSnapshot(fix(22.3001, 1000), 2);
+        GameSnapshot third = fix(22.3002, 2000);
+        store.setSnapshot(third, 3);
+        assertEquals(1, posted.size());
+
+        frame();
+        assertEquals(1, renderedTo.size());
+        //Nothing drawn before, so the first frame draws everything
+        assertNull(renderedFrom.get(0));
+        assertSame(third, renderedTo.get(0));
+        assertSame(third, store.getRenderedSnapshot());
+        assertFalse(store.isFramePosted());
+    }
+
+    @Test
+    public void laterFramesRenderTheDifference() {
+        GameSnapshot first = fix(22.3, 0);
+        store.setSnapshot(first, 1);
+        frame();
+        GameSnapshot second = fix(22.3001, 1000);
+        store.setSnapshot(second, 2);
+        frame();
+        assertSame(first, renderedFrom.get(1));
+        assertSame(second, renderedTo.get(1));
+
+        //An unchanged snapshot is not drawn again
+        store.setSnapshot(second, 2);
+        frame();
+        assertEquals(2, renderedTo.size());
+    }
+
+    @Test
+    public void unchangedScoreIsNotRendered() {
+        store.setScore(3);
+        store.setScore(4);
+        frame();
+        store.setScore(4);
+        frame();
+        store.setScore(5);
+        frame();
+        assertEquals(2, renderedScores.size());
+        assertEquals(4, (int) renderedScores.get(0));
+        assertEquals(5, (int) renderedScores.get(1));
+    }
+
+    @Test
+    public void snapshotStaysPendingUntilRenderable() {
+        ready = false;
+        GameSnapshot first = fix(22.3, 0);
+        store.setSnapshot(first, 1);
+        store.setScore(1);
+        frame();
+        assertTrue(renderedTo.isEmpty());
+        //The score does not wait for the map
+        assertEquals(1, renderedScores.size());
+        assertNull(store.getRenderedSnapshot());
+
+        ready = true;
+        store.redraw(loop.getSnapshot());
+        frame();
+        assertNull(renderedFrom.get(0));
+        assertSame(first, renderedTo.get(0));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.health_booster;
+
+import com.example.health_booster.engine.Geo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MapOverlayRendererTest {
+
+    private static final double LATITUDE = 22.3;
+    private static final double LONGITUDE = 114.17;
+    //Degrees of latitude per metre
+    private static final double METRE = 1 / Math.toRadians(Geo.EARTH_RADIUS_METRES);
+
+    @Test
+    public void metresPerPixelShrinksWithZoomAndLatitude() {
+        //About 4.78 m per pixel at the equator on zoom 15
+        assertEquals(4.777, MapOverlayRenderer.metresPerPixel(0, 15), 0.001);
+        assertEquals(MapOverlayRenderer.metresPerPixel(0, 15) / 2, MapOverlayRenderer.metresPerPixel(0, 16), 1e-9);
+        assertTrue(MapOverlayRenderer.metresPerPixel(60, 15) < MapOverlayRenderer.metresPerPixel(22, 15));
+    }
+
+    @Test
+    public void movesBelowTwoPixelsAreSkipped() {
+        MapOverlayRenderer.OverlayPosition position = new MapOverlayRenderer.OverlayPosition();
+        //Two pixels are about 8.8 m here on zoom 15
+        assertEquals(8.84, MapOverlayRenderer.PIXEL_THRESHOLD * MapOverlayRenderer.metresPerPixel(LATITUDE, 15), 0.01);
+        assertEquals(MapOverlayRenderer.OverlayPosition.ADD, position.update(false, LATITUDE, LONGITUDE, 15));
+        assertEquals(MapOverlayRenderer.OverlayPosition.SKIP, position.update(true, LATITUDE + 5 * METRE, LONGITUDE, 15));
+        //Measured from where it was drawn, so creeping moves add up
+        assertEquals(MapOverlayRenderer.OverlayPosition.MOVE, position.update(true, LATITUDE + 10 * METRE, LONGITUDE, 15));
+        assertEquals(MapOverlayRenderer.OverlayPosition.SKIP, position.update(true, LATITUDE + 15 * METRE, LONGITUDE, 15));
+        //Zoomed in the same move is visible
+        assertEquals(MapOverlayRenderer.OverlayPosition.MOVE, position.update(true, LATITUDE + 15 * METRE, LONGITUDE, 18));
+        //Handed over at an unknown position, the next update moves it
+        position.forget();
+        assertEquals(MapOverlayRenderer.OverlayPosition.MOVE, position.update(true, LATITUDE + 15 * METRE, LONGITUDE, 15));
+    }
+
+    @Test
+    public void avoidedCallsCountAgainstRemoveAndAdd() {
+        MapOverlayRenderer.OverlayPosition position = new MapOverlayRenderer.OverlayPosition();
+        //Adding is needed either way
+        position.update(false, LATITUDE, LONGITUDE, 15);
+        assertEquals(0, position.getAvoidedCalls());
+        //One move instead of remove() and add
+        position.update(true, LATITUDE + 20 * METRE, LONGITUDE, 15);
+        assertEquals(1, position.getAvoidedCalls());
+        //Nothing instead of remove() and add
+        position.update(true, LATITUDE + 21 * METRE, LONGITUDE, 15);
+        assertEquals(3, position.getAvoidedCalls());
+
+        MapOverlayRenderer renderer = new MapOverlayRenderer();
+        assertEquals(0, renderer.getAvoidedCalls());
+        assertEquals(0, renderer.getRendererCalls());
+    }
+}
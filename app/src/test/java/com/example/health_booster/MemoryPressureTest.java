@@ -0,0 +1,40 @@
+package com.example.health_booster;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemoryPressureTest {
+
+    @Test
+    public void hidingTheUiIsNoPressure() {
+        MemoryPressure memoryPressure = new MemoryPressure();
+        assertFalse(memoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, 0));
+        assertFalse(memoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, 0));
+        assertFalse(memoryPressure.isDegraded());
+    }
+
+    @Test
+    public void degradesOnceUnderPressure() {
+        MemoryPressure memoryPressure = new MemoryPressure();
+        assertTrue(memoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, 0));
+        assertFalse(memoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, 1000));
+        assertFalse(memoryPressure.onLowMemory(2000));
+        assertTrue(memoryPressure.isDegraded());
+        assertEquals(1, memoryPressure.getTransitionCount());
+    }
+
+    @Test
+    public void restoresAfterQuietPeriodOnly() {
+        MemoryPressure memoryPressure = new MemoryPressure();
+        memoryPressure.onLowMemory(0);
+        memoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND, 10000);
+        assertFalse(memoryPressure.checkRestore(false, MemoryPressure.QUIET_MILLIS));
+        assertFalse(memoryPressure.checkRestore(true, 10000 + MemoryPressure.QUIET_MILLIS));
+        assertTrue(memoryPressure.checkRestore(false, 10000 + MemoryPressure.QUIET_MILLIS));
+        assertFalse(memoryPressure.isDegraded());
+        assertEquals(2, memoryPressure.getTransitionCount());
+    }
+}
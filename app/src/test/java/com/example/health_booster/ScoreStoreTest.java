@@ -0,0 +1,79 @@
+package com.example.health_booster;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScoreStoreTest {
+
+    private final List<Runnable> queuedWrites = new ArrayList<>();
+    private final List<Integer> storedScores = new ArrayList<>();
+
+    private final ScoreStore.Persistence persistence = new ScoreStore.Persistence() {
+        @Override
+        public int load() {
+            return 7;
+        }
+
+        @Override
+        public void store(int score) {
+            storedScores.add(score);
+        }
+    };
+
+    private void runQueuedWrites() {
+        List<Runnable> writes = new ArrayList<>(queuedWrites);
+        queuedWrites.clear();
+        for (Runnable write : writes) {
+            write.run();
+        }
+    }
+
+    @Test
+    public void loadsOnce() {
+        ScoreStore scoreStore = new ScoreStore(persistence, queuedWrites::add);
+        assertEquals(7, scoreStore.get());
+        assertTrue(queuedWrites.isEmpty());
+    }
+
+    @Test
+    public void coalescesRapidUpdates() {
+        ScoreStore scoreStore = new ScoreStore(persistence, queuedWrites::add);
+        scoreStore.set(8);
+        scoreStore.set(9);
+        scoreStore.set(10);
+        assertEquals(10, scoreStore.get());
+        assertEquals(1, queuedWrites.size());
+        assertTrue(storedScores.isEmpty());
+
+        runQueuedWrites();
+        assertEquals(1, storedScores.size());
+        assertEquals(10, (int) storedScores.get(0));
+    }
+
+    @Test
+    public void updateAfterWriteSchedulesAnotherWrite() {
+        ScoreStore scoreStore = new ScoreStore(persistence, queuedWrites::add);
+        scoreStore.set(8);
+        runQueuedWrites();
+        scoreStore.set(9);
+        assertEquals(1, queuedWrites.size());
+        runQueuedWrites();
+        assertEquals(2, scoreStore.getWriteCount());
+    }
+
+    @Test
+    public void flushWritesPendingValueOnce() {
+        ScoreStore scoreStore = new ScoreStore(persistence, queuedWrites::add);
+        scoreStore.set(8);
+        scoreStore.flush();
+        assertEquals(1, storedScores.size());
+        //The queued write finds nothing left to do
+        runQueuedWrites();
+        scoreStore.flush();
+        assertEquals(1, storedScores.size());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.health_booster;
+
+import android.content.SharedPreferences;
+
+import com.example.health_booster.engine.GameTask;
+import com.example.health_booster.engine.RandomTaskGenerator;
+import com.example.health_booster.engine.TaskEngine;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SessionCacheTest {
+
+    //Only the long values the cache uses are backed by the map
+    private final Map<String, Long> values = new HashMap<>();
+
+    private final SharedPreferences sharedPreferences = new SharedPreferences() {
+        @Override
+        public Map<String, ?> getAll() {
+            return values;
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return defValue;
+        }
+
+        @Override
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return defValues;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            Long value = values.get(key);
+            return value != null ? value : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new Editor() {
+                @Override
+                public Editor putString(String key, String value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putStringSet(String key, Set<String> value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putInt(String key, int value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putLong(String key, long value) {
+                    values.put(key, value);
+                    return this;
+                }
+
+                @Override
+                public Editor putFloat(String key, float value) {
+                    return this;
+                }
+
+                @Override
+                public Editor putBoolean(String key, boolean value) {
+                    return this;
+                }
+
+                @Override
+                public Editor remove(String key) {
+                    values.remove(key);
+                    return this;
+                }
+
+                @Override
+                public Editor clear() {
+                    values.clear();
+                    return this;
+                }
+
+                @Override
+                public boolean commit() {
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                }
+            };
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    };
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+    };
+
+    @Test
+    public void restoresPositionAndTaskExactly() {
+        TaskEngine taskEngine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        taskEngine.setPosition(22.300123456789, 114.170987654321, 0);
+        taskEngine.setTask(new GameTask(22.301, 114.171, 500));
+        new SessionCache(sharedPreferences).save(taskEngine, 1000);
+
+        SessionCache sessionCache = new SessionCache(sharedPreferences);
+        assertTrue(sessionCache.load(2000));
+        assertEquals(22.300123456789, sessionCache.getLatitude(), 0);
+        assertEquals(114.170987654321, sessionCache.getLongitude(), 0);
+        assertEquals(22.301, sessionCache.getTask().getLatitude(), 0);
+        assertEquals(500, sessionCache.getTask().getCreatedAtMillis());
+    }
+
+    @Test
+    public void ignoresMissingOrStaleSession() {
+        SessionCache sessionCache = new SessionCache(sharedPreferences);
+        assertFalse(sessionCache.load(1000));
+        TaskEngine taskEngine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        taskEngine.setPosition(22.3, 114.17, 0);
+        sessionCache.save(taskEngine, 1000);
+        assertFalse(sessionCache.load(1001 + SessionCache.MAX_AGE_MILLIS));
+        assertTrue(sessionCache.load(1000 + SessionCache.MAX_AGE_MILLIS));
+        assertNull(sessionCache.getTask());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a walk delivered in batches of different sizes, as the fused provider does with a
+ * max wait time. Reports the processing time per batch, and as counters the wakeups and fixes
+ * processed, so wakeups per fix shrink with the batch size while the work per fix stays the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchReplayBenchmark {
+
+    private static final int FIXES = 3600;
+
+    //1 = a wakeup per fix as in the foreground, 6 and 60 = 10 s fixes with 1 and 10 minute waits
+    @Param({"1", "6", "60"})
+    public int batchSize;
+
+    private final double[] latitudes = new double[FIXES];
+    private final double[] longitudes = new double[FIXES];
+    private final float[] accuracies = new float[FIXES];
+    private TaskEngine engine;
+    private int index;
+    private long timeMillis;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long wakeups;
+        public long fixes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            wakeups = 0;
+            fixes = 0;
+        }
+    }
+
+    private static final TaskEngine.Listener NO_OP = new TaskEngine.Listener() {
+    };
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        double latitude = 22.3;
+        double longitude = 114.17;
+        for (int i = 0; i < FIXES; i++) {
+            latitude += 0.00005 + random.nextGaussian() * 0.00003;
+            longitude += 0.00005 + random.nextGaussian() * 0.00003;
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+            accuracies[i] = 5 + random.nextFloat() * 10;
+        }
+        engine = new TaskEngine(NO_OP, new RandomTaskGenerator(42));
+        engine.setLocationFilter(new LocationFilter());
+    }
+
+    @Benchmark
+    public void processBatch(Counters counters) {
+        //One wakeup handles the whole batch in a single pass
+        for (int n = 0; n < batchSize; n++) {
+            int i = index;
+            engine.onFix(latitudes[i], longitudes[i], accuracies[i], timeMillis);
+            index = i + 1 == FIXES ? 0 : i + 1;
+            timeMillis += 10000;
+        }
+        counters.wakeups++;
+        counters.fixes += batchSize;
+    }
+}
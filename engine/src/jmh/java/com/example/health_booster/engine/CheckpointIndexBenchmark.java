@@ -0,0 +1,70 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-fix completion check against many active checkpoints, the grid index against scanning
+ * every checkpoint. The checkpoints get denser with their count, as a trail would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CheckpointIndexBenchmark {
+
+    private static final int FIXES = 1024;
+
+    @Param({"1", "50", "1000", "10000", "50000"})
+    public int checkpoints;
+
+    private CheckpointIndex index;
+    private Geofence[] geofences;
+    private final double[] fixLatitudes = new double[FIXES];
+    private final double[] fixLongitudes = new double[FIXES];
+    private int fix;
+
+    @Setup
+    public void setUp() {
+        //Checkpoints and fixes over about 5 x 5 km
+        Random random = new Random(42);
+        index = new CheckpointIndex(TaskEngine.DEFAULT_COMPLETION_RADIUS_METRES, 22.3, checkpoints);
+        geofences = new Geofence[checkpoints];
+        for (int i = 0; i < checkpoints; i++) {
+            double latitude = 22.3 + random.nextDouble() * 0.045;
+            double longitude = 114.17 + random.nextDouble() * 0.049;
+            index.add(latitude, longitude);
+            geofences[i] = new Geofence(TaskEngine.DEFAULT_COMPLETION_RADIUS_METRES);
+            geofences[i].setCentre(latitude, longitude);
+        }
+        for (int i = 0; i < FIXES; i++) {
+            fixLatitudes[i] = 22.3 + random.nextDouble() * 0.045;
+            fixLongitudes[i] = 114.17 + random.nextDouble() * 0.049;
+        }
+    }
+
+    @Benchmark
+    public int gridIndex() {
+        fix = (fix + 1) & (FIXES - 1);
+        return index.findWithin(fixLatitudes[fix], fixLongitudes[fix]);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        fix = (fix + 1) & (FIXES - 1);
+        for (int i = 0; i < geofences.length; i++) {
+            if (geofences[i].contains(fixLatitudes[fix], fixLongitudes[fix])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
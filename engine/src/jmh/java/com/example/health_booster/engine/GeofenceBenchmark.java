@@ -0,0 +1,67 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion check cost: the old degree box against the metre radius geofence and a plain
+ * haversine distance, for fixes scattered within a kilometre of the task.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeofenceBenchmark {
+
+    private static final int POINTS = 4096;
+
+    @Param({"22.3", "59.9"})
+    public double latitude;
+
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+    private final Geofence geofence = new Geofence(TaskEngine.DEFAULT_COMPLETION_RADIUS_METRES);
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = latitude + (random.nextDouble() - 0.5) * 0.018;
+            longitudes[i] = 114.17 + (random.nextDouble() - 0.5) * 0.018;
+        }
+        geofence.setCentre(latitude, 114.17);
+    }
+
+    private int next() {
+        int i = index;
+        index = (i + 1) & (POINTS - 1);
+        return i;
+    }
+
+    @Benchmark
+    public boolean degreeBox() {
+        int i = next();
+        return Math.abs(114.17 - longitudes[i]) < 0.00050 && Math.abs(latitude - latitudes[i]) < 0.00050;
+    }
+
+    @Benchmark
+    public boolean geofence() {
+        int i = next();
+        return geofence.contains(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public boolean haversine() {
+        int i = next();
+        return Geofence.haversineMetres(latitude, 114.17, latitudes[i], longitudes[i]) <= TaskEngine.DEFAULT_COMPLETION_RADIUS_METRES;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording on the hot path, gc.alloc.rate.norm must stay at 0.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Histogram histogram = metrics.histogram("latency", Metrics.exponentialBounds(1, 2, 24));
+    private final Metrics.Meter meter = metrics.meter("calls");
+    private long value;
+
+    @Benchmark
+    public void recordHistogram() {
+        value = (value * 31 + 7) & 0xfffff;
+        histogram.record(value);
+    }
+
+    @Benchmark
+    public void markMeter() {
+        value += 250;
+        meter.mark(value);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radius query and task placement on a memory-mapped POI index of a city sized dataset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoiIndexBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int points;
+
+    private File path;
+    private PoiIndex poiIndex;
+    private PoiTaskGenerator generator;
+    private final double[] task = new double[2];
+    private int found;
+
+    private final PoiIndex.Visitor counter = (latitude, longitude) -> found++;
+
+    @Setup
+    public void setUp() throws IOException {
+        //Points over about 30 x 30 km
+        Random random = new Random(42);
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        for (int i = 0; i < points; i++) {
+            latitudes[i] = 22.2 + random.nextDouble() * 0.27;
+            longitudes[i] = 114.0 + random.nextDouble() * 0.29;
+        }
+        path = File.createTempFile("poi", ".bin");
+        PoiIndex.write(path, latitudes, longitudes, points, PoiIndex.DEFAULT_CELL_DEGREES);
+        poiIndex = new PoiIndex(path);
+        generator = new PoiTaskGenerator(poiIndex, 42, new RandomTaskGenerator(42));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        poiIndex.close();
+        path.delete();
+    }
+
+    @Benchmark
+    public int query() {
+        found = 0;
+        poiIndex.query(22.33, 114.15, RandomTaskGenerator.DEFAULT_MIN_METRES, RandomTaskGenerator.DEFAULT_MAX_METRES, counter);
+        return found;
+    }
+
+    @Benchmark
+    public double[] placeTask() {
+        generator.next(22.33, 114.15, task);
+        return task;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the game logic per location fix and per generated task. Run with the gc profiler,
+ * gc.alloc.rate.norm is the allocation per fix.
+ */
+@State(Scope.Thread)
+public class TaskEngineBenchmark {
+
+    //A walk of 10000 one second fixes at about 1.4 m/s heading north-east
+    private static final int FIXES = 10000;
+
+    private final double[] latitudes = new double[FIXES];
+    private final double[] longitudes = new double[FIXES];
+    private TaskEngine engine;
+    private int index;
+    private long timeMillis;
+
+    private static final TaskEngine.Listener NO_OP = new TaskEngine.Listener() {
+    };
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        double latitude = 22.3;
+        double longitude = 114.17;
+        for (int i = 0; i < FIXES; i++) {
+            //Walking plus a few metres of GPS noise
+            latitude += 0.00001 + random.nextGaussian() * 0.00002;
+            longitude += 0.00001 + random.nextGaussian() * 0.00002;
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+        }
+        engine = new TaskEngine(NO_OP, new RandomTaskGenerator(42));
+        engine.onFix(latitudes[0], longitudes[0], 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void fixes() {
+        int i = index;
+        engine.onFix(latitudes[i], longitudes[i], timeMillis);
+        index = i + 1 == FIXES ? 0 : i + 1;
+        timeMillis += 1000;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public GameTask taskGeneration() {
+        engine.nextTask(false, timeMillis);
+        return engine.getTask();
+    }
+}
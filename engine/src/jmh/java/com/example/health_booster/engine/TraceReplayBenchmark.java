@@ -0,0 +1,111 @@
+package com.example.health_booster.engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays an hour of walking through the same path as real fixes, filter and engine included,
+ * as fast as possible. Reports fixes per second, and as counters the tasks completed and the
+ * trace changes that would each cost a renderer call, so a change to the pipeline shows up as
+ * a different throughput or a different game for the same trace.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TraceReplayBenchmark {
+
+    private static final int FIXES = 3600;
+    private static final double WALKING_METRES_PER_SECOND = 1.4;
+
+    @Param({"true", "false"})
+    public boolean filtered;
+
+    private FixTrace trace;
+    private TaskEngine engine;
+    private TraceReplay.Sink sink;
+    private int traceChanges;
+    private int completions;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long completions;
+        public long rendererCalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            completions = 0;
+            rendererCalls = 0;
+        }
+    }
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+        @Override
+        public void onTaskCompleted(GameTask task) {
+            completions++;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        //Record a walk from task to task with GPS noise, 1 s fixes as in the foreground. Replays
+        //use the same task seed, so they meet the same tasks
+        Random random = new Random(42);
+        trace = new FixTrace();
+        engine = new TaskEngine(listener, new RandomTaskGenerator(42));
+        double latitude = 22.3;
+        double longitude = 114.17;
+        double metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+        for (int i = 0; i < FIXES; i++) {
+            GameTask task = engine.getTask();
+            if (task != null)
+            {
+                double north = (task.getLatitude() - latitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+                double east = (task.getLongitude() - longitude) * metresPerDegreeLongitude;
+                double distance = Math.max(1, Math.sqrt(north * north + east * east));
+                latitude += WALKING_METRES_PER_SECOND * north / distance / Geofence.METRES_PER_DEGREE_LATITUDE;
+                longitude += WALKING_METRES_PER_SECOND * east / distance / metresPerDegreeLongitude;
+            }
+            double fixLatitude = latitude + random.nextGaussian() * 5 / Geofence.METRES_PER_DEGREE_LATITUDE;
+            double fixLongitude = longitude + random.nextGaussian() * 5 / metresPerDegreeLongitude;
+            float accuracy = 5 + random.nextFloat() * 10;
+            trace.add(fixLatitude, fixLongitude, i * 1000L, accuracy);
+            engine.onFix(fixLatitude, fixLongitude, accuracy, i * 1000L);
+        }
+        sink = (fixLatitude, fixLongitude, accuracyMetres, timeMillis) -> {
+            if (engine.onFix(fixLatitude, fixLongitude, accuracyMetres, timeMillis)
+                    && engine.getTraceChange() != TraceBuffer.IGNORED)
+            {
+                traceChanges++;
+            }
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIXES)
+    public void replayTrace(Counters counters) {
+        //A fresh engine per replay so every invocation plays the same game
+        engine = new TaskEngine(listener, new RandomTaskGenerator(42));
+        if (filtered)
+        {
+            engine.setLocationFilter(new LocationFilter());
+        }
+        traceChanges = 0;
+        completions = 0;
+        new TraceReplay(trace, TraceReplay.MAX_SPEED).deliverAll(sink, 0);
+        counters.completions += completions;
+        counters.rendererCalls += traceChanges;
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.health_booster.engine;
+
+import java.util.Arrays;
+
+/**
+ * Many checkpoints at once, bucketed in a hashed grid whose cells are as large as the
+ * completion radius. Finding a checkpoint within the radius of a fix only looks at the 3 x 3
+ * cells around it, so the cost does not grow with the number of checkpoints. Everything is kept
+ * in primitive arrays, a lookup does not allocate.
+ */
+public class CheckpointIndex {
+
+    private final double radiusMetres;
+    private final double radiusSquared;
+    private final double metresPerDegreeLongitude;
+
+    //Checkpoints by id, chained per grid cell through next
+    private double[] latitudes;
+    private double[] longitudes;
+    private boolean[] active;
+    private int[] next;
+    private int size;
+    private int activeCount;
+
+    //Open addressing table from cell key to the first checkpoint in that cell
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int cellCount;
+
+    /**
+     * @param referenceLatitude latitude the grid is scaled for, e.g. where the trail starts
+     */
+    public CheckpointIndex(double radiusMetres, double referenceLatitude, int expectedCount) {
+        this.radiusMetres = radiusMetres;
+        this.radiusSquared = radiusMetres * radiusMetres;
+        this.metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(referenceLatitude));
+        int capacity = Math.max(16, expectedCount);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        active = new boolean[capacity];
+        next = new int[capacity];
+        allocateCells(capacity);
+    }
+
+    private void allocateCells(int checkpoints) {
+        //At most one cell per checkpoint, keep the table at most half full
+        int tableSize = Integer.highestOneBit(Math.max(16, checkpoints) * 2 - 1) << 1;
+        cellKeys = new long[tableSize];
+        cellHeads = new int[tableSize];
+        Arrays.fill(cellHeads, -1);
+        cellCount = 0;
+    }
+
+    /**
+     * @return the id of the new checkpoint, ids count up from 0
+     */
+    public int add(double latitude, double longitude) {
+        if (size == latitudes.length)
+        {
+            grow();
+        }
+        int id = size++;
+        latitudes[id] = latitude;
+        longitudes[id] = longitude;
+        active[id] = true;
+        activeCount++;
+        link(id);
+        return id;
+    }
+
+    private void link(int id) {
+        long key = cellKey(cellX(longitudes[id]), cellY(latitudes[id]));
+        int slot = findSlot(key);
+        if (cellHeads[slot] == -1)
+        {
+            cellKeys[slot] = key;
+            cellCount++;
+        }
+        next[id] = cellHeads[slot];
+        cellHeads[slot] = id;
+    }
+
+    private void grow() {
+        int capacity = latitudes.length * 2;
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        active = Arrays.copyOf(active, capacity);
+        next = Arrays.copyOf(next, capacity);
+        allocateCells(capacity);
+        for (int id = 0; id < size; id++)
+        {
+            link(id);
+        }
+    }
+
+    public boolean remove(int id) {
+        if (id < 0 || id >= size || !active[id])
+        {
+            return false;
+        }
+        //Left in its cell chain, lookups skip it
+        active[id] = false;
+        activeCount--;
+        return true;
+    }
+
+    /**
+     * @return the id of an active checkpoint within the radius, -1 if there is none
+     */
+    public int findWithin(double latitude, double longitude) {
+        int x = cellX(longitude);
+        int y = cellY(latitude);
+        for (int dx = -1; dx <= 1; dx++)
+        {
+            for (int dy = -1; dy <= 1; dy++)
+            {
+                int slot = findSlot(cellKey(x + dx, y + dy));
+                for (int id = cellHeads[slot]; id != -1; id = next[id])
+                {
+                    if (!active[id])
+                    {
+                        continue;
+                    }
+                    double east = (longitudes[id] - longitude) * metresPerDegreeLongitude;
+                    double north = (latitudes[id] - latitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+                    if (east * east + north * north <= radiusSquared)
+                    {
+                        return id;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (cellHeads[slot] != -1 && cellKeys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int cellX(double longitude) {
+        return (int) Math.floor(longitude * metresPerDegreeLongitude / radiusMetres);
+    }
+
+    private int cellY(double latitude) {
+        return (int) Math.floor(latitude * Geofence.METRES_PER_DEGREE_LATITUDE / radiusMetres);
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        return key ^ (key >>> 33);
+    }
+
+    public void clear() {
+        Arrays.fill(active, 0, size, false);
+        Arrays.fill(cellHeads, -1);
+        size = 0;
+        activeCount = 0;
+        cellCount = 0;
+    }
+
+    public double getLatitude(int id) {
+        return latitudes[id];
+    }
+
+    public double getLongitude(int id) {
+        return longitudes[id];
+    }
+
+    public boolean isActive(int id) {
+        return id >= 0 && id < size && active[id];
+    }
+
+    /**
+     * Number of ids handed out, including removed checkpoints.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+}
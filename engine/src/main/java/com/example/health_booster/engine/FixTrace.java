@@ -0,0 +1,248 @@
+package com.example.health_booster.engine;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * A recorded walk as location fixes in primitive arrays, read from a GPX track or a CSV of
+ * "latitude,longitude,timeMillis[,accuracyMetres]" lines. Replayed by {@link TraceReplay}.
+ */
+public class FixTrace {
+
+    //Track points without a time are spaced this far apart
+    static final long DEFAULT_INTERVAL_MILLIS = 1000;
+    //GPX has no accuracy, a horizontal dilution of precision of 1 is taken as about this many metres
+    static final float METRES_PER_HDOP = 5;
+
+    private double[] latitudes = new double[256];
+    private double[] longitudes = new double[256];
+    private long[] timesMillis = new long[256];
+    private float[] accuracies = new float[256];
+    private int size;
+
+    /**
+     * @param timeMillis time of the fix, Long.MIN_VALUE if unknown
+     * @param accuracyMetres accuracy of the fix, 0 if unknown
+     */
+    public void add(double latitude, double longitude, long timeMillis, float accuracyMetres) {
+        if (size == latitudes.length)
+        {
+            int capacity = size * 2;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            timesMillis = Arrays.copyOf(timesMillis, capacity);
+            accuracies = Arrays.copyOf(accuracies, capacity);
+        }
+        if (timeMillis == Long.MIN_VALUE)
+        {
+            timeMillis = size == 0 ? 0 : timesMillis[size - 1] + DEFAULT_INTERVAL_MILLIS;
+        }
+        else if (size > 0 && timeMillis < timesMillis[size - 1])
+        {
+            throw new IllegalArgumentException("Fix " + size + " is older than the one before");
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        timesMillis[size] = timeMillis;
+        accuracies[size] = accuracyMetres;
+        size++;
+    }
+
+    /**
+     * Reads a GPX or CSV file, told apart by the extension.
+     */
+    public static FixTrace read(File file) throws IOException {
+        if (file.getName().toLowerCase().endsWith(".gpx"))
+        {
+            try (InputStream in = new FileInputStream(file))
+            {
+                return readGpx(in);
+            }
+        }
+        try (Reader reader = new FileReader(file))
+        {
+            return readCsv(reader);
+        }
+    }
+
+    public static FixTrace readCsv(Reader reader) throws IOException {
+        FixTrace trace = new FixTrace();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null)
+        {
+            lineNumber++;
+            String[] fields = line.split(",");
+            //Comments and a header line are skipped, an empty time is an invalid fix
+            if (fields.length < 3 || line.startsWith("#"))
+            {
+                continue;
+            }
+            String time = fields[2].trim();
+            if (!time.isEmpty() && !Character.isDigit(time.charAt(0)))
+            {
+                continue;
+            }
+            try
+            {
+                trace.add(Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim()),
+                        Long.parseLong(time), fields.length > 3 ? Float.parseFloat(fields[3].trim()) : 0);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException("Invalid fix on line " + lineNumber + ": " + line, e);
+            }
+        }
+        return trace;
+    }
+
+    public static FixTrace readGpx(InputStream in) throws IOException {
+        final FixTrace trace = new FixTrace();
+        try
+        {
+            SAXParserFactory.newInstance().newSAXParser().parse(in, new DefaultHandler() {
+                private final StringBuilder text = new StringBuilder();
+                private double latitude;
+                private double longitude;
+                private long timeMillis;
+                private float accuracy;
+                private boolean inPoint;
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    text.setLength(0);
+                    if ("trkpt".equals(qName) || "rtept".equals(qName))
+                    {
+                        latitude = Double.parseDouble(attributes.getValue("lat"));
+                        longitude = Double.parseDouble(attributes.getValue("lon"));
+                        timeMillis = Long.MIN_VALUE;
+                        accuracy = 0;
+                        inPoint = true;
+                    }
+                }
+
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    text.append(ch, start, length);
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) throws SAXException {
+                    if (!inPoint)
+                    {
+                        return;
+                    }
+                    if ("time".equals(qName))
+                    {
+                        timeMillis = parseTime(text.toString().trim());
+                    }
+                    else if ("hdop".equals(qName))
+                    {
+                        accuracy = Float.parseFloat(text.toString().trim()) * METRES_PER_HDOP;
+                    }
+                    else if ("trkpt".equals(qName) || "rtept".equals(qName))
+                    {
+                        trace.add(latitude, longitude, timeMillis, accuracy);
+                        inPoint = false;
+                    }
+                }
+            });
+        }
+        catch (SAXException | ParserConfigurationException | IllegalArgumentException e)
+        {
+            throw new IOException("Invalid GPX: " + e.getMessage(), e);
+        }
+        return trace;
+    }
+
+    /**
+     * Parses an ISO 8601 UTC or offset time as used by GPX, e.g. 2020-11-02T08:15:30.250Z.
+     */
+    static long parseTime(String time) {
+        if (time.length() < 19 || time.charAt(4) != '-' || time.charAt(10) != 'T')
+        {
+            throw new IllegalArgumentException("Invalid time " + time);
+        }
+        int year = Integer.parseInt(time.substring(0, 4));
+        int month = Integer.parseInt(time.substring(5, 7));
+        int day = Integer.parseInt(time.substring(8, 10));
+        int hour = Integer.parseInt(time.substring(11, 13));
+        int minute = Integer.parseInt(time.substring(14, 16));
+        int second = Integer.parseInt(time.substring(17, 19));
+        int index = 19;
+        long millis = 0;
+        if (index < time.length() && time.charAt(index) == '.')
+        {
+            int scale = 100;
+            index++;
+            while (index < time.length() && Character.isDigit(time.charAt(index)))
+            {
+                millis += (time.charAt(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+        }
+        long offsetMinutes = 0;
+        if (index < time.length() && time.charAt(index) != 'Z')
+        {
+            int sign = time.charAt(index) == '-' ? -1 : 1;
+            offsetMinutes = sign * (Integer.parseInt(time.substring(index + 1, index + 3)) * 60
+                    + Integer.parseInt(time.substring(index + 4, index + 6)));
+        }
+        long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetMinutes * 60;
+        return seconds * 1000 + millis;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, without java.time which needs API 26.
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    public long getTimeMillis(int index) {
+        return timesMillis[index];
+    }
+
+    public float getAccuracy(int index) {
+        return accuracies[index];
+    }
+
+    /**
+     * Time from the first to the last fix.
+     */
+    public long getDurationMillis() {
+        return size == 0 ? 0 : timesMillis[size - 1] - timesMillis[0];
+    }
+}
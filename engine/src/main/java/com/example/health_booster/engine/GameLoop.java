@@ -0,0 +1,219 @@
+package com.example.health_booster.engine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a {@link TaskEngine} on one thread, the game thread, and publishes its state as
+ * immutable {@link GameSnapshot}s. Fixes and commands may come from any thread, they are handed
+ * to the executor, which must run them one at a time in order, e.g. a HandlerThread's Handler or
+ * a single thread executor. The engine and the listener are only ever used on the game thread,
+ * other threads read the latest snapshot from a single atomic reference without locking.
+ * A fix that only moved the user is published once the previous snapshot was read, so while
+ * nothing is displayed fixes build no snapshots and no path nodes, game events always publish.
+ */
+public class GameLoop implements TaskEngine.Listener {
+
+    /**
+     * Told on the game thread about every snapshot right after it was published.
+     */
+    public interface Observer {
+        void onSnapshot(GameSnapshot snapshot);
+    }
+
+    private final TaskEngine engine;
+    private final TaskEngine.Listener listener;
+    private final Executor executor;
+    private final AtomicReference<GameSnapshot> snapshot = new AtomicReference<>(GameSnapshot.EMPTY);
+    //Set by readers, cleared by every publish
+    private final AtomicBoolean snapshotRead = new AtomicBoolean(true);
+    private volatile Observer observer;
+    //Game thread only, what the next snapshot is built from
+    private long version;
+    private boolean stale;
+    private boolean eventPending;
+    private TracePath trace;
+    private boolean traceReset;
+    //How the engine's trace changed since the path was last brought up to date
+    private int traceAppends;
+    private boolean traceLastReplaced;
+    private GameTask[] checkpoints = new GameTask[0];
+    private boolean[] checkpointReached = new boolean[0];
+    private final Runnable publishIfStale = () -> {
+        if (stale)
+        {
+            publish();
+        }
+    };
+
+    public GameLoop(TaskEngine.Listener listener, Executor executor) {
+        this(listener, new RandomTaskGenerator(System.nanoTime()), executor);
+    }
+
+    public GameLoop(TaskEngine.Listener listener, TaskGenerator taskGenerator, Executor executor) {
+        this.engine = new TaskEngine(this, taskGenerator);
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    /**
+     * Processes a fix on the game thread, callable from any thread.
+     */
+    public void submitFix(final double latitude, final double longitude, final float accuracyMetres, final long timeMillis) {
+        executor.execute(() -> onFix(latitude, longitude, accuracyMetres, timeMillis));
+    }
+
+    /**
+     * Runs a command against the engine on the game thread and publishes the result, callable
+     * from any thread.
+     */
+    public void execute(final Runnable command) {
+        executor.execute(() -> {
+            command.run();
+            publish();
+        });
+    }
+
+    /**
+     * Publishes the latest state if fixes changed it since the last snapshot, callable from any
+     * thread, e.g. when a display starts reading snapshots again.
+     */
+    public void refresh() {
+        executor.execute(publishIfStale);
+    }
+
+    /**
+     * Processes a fix, on the game thread only.
+     *
+     * @return false if the fix was filtered out as noise and nothing changed
+     */
+    public boolean onFix(double latitude, double longitude, float accuracyMetres, long timeMillis) {
+        if (!engine.onFix(latitude, longitude, accuracyMetres, timeMillis))
+        {
+            return false;
+        }
+        //Only counted, the path is brought up to date from the engine's trace when publishing
+        int change = engine.getTraceChange();
+        if (change == TraceBuffer.APPENDED)
+        {
+            traceAppends++;
+        }
+        else if (change == TraceBuffer.REPLACED && traceAppends == 0)
+        {
+            traceLastReplaced = true;
+        }
+        stale = true;
+        if (eventPending || snapshotRead.get())
+        {
+            publish();
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the engine's current state, on the game thread only. Needed after changing the
+     * engine directly rather than through {@link #execute(Runnable)}.
+     */
+    public void publish() {
+        syncTrace();
+        syncCheckpoints();
+        stale = false;
+        eventPending = false;
+        //Cleared before the new snapshot is out, so reading it counts
+        snapshotRead.set(false);
+        Position position = engine.getPosition();
+        GameSnapshot next = new GameSnapshot(++version, engine.hasPosition(), position.getLatitude(), position.getLongitude(),
+                position.getTimeMillis(), engine.getTask(), engine.getTask() != null ? trace : null,
+                checkpoints, checkpointReached, engine.getCheckpointsRemaining(), engine.getCompletedCount(), engine.getWalkedMetres());
+        snapshot.set(next);
+        Observer current = observer;
+        if (current != null)
+        {
+            current.onSnapshot(next);
+        }
+    }
+
+    private void syncTrace() {
+        TraceBuffer buffer = engine.getTrace();
+        int appends = traceAppends;
+        boolean replaced = traceLastReplaced;
+        traceAppends = 0;
+        traceLastReplaced = false;
+        //A new task restarts the path, it keeps at most twice the buffer, then starts over from what the buffer kept
+        if (traceReset || trace == null || appends >= buffer.size() || trace.size() + appends > 2 * buffer.getCapacity())
+        {
+            trace = TracePath.of(buffer);
+            traceReset = false;
+            return;
+        }
+        //The newest points of the buffer are the appended ones, the one before them was the last published
+        int first = buffer.size() - appends;
+        if (replaced)
+        {
+            trace = trace.replaceLast(buffer.getLatitude(first - 1), buffer.getLongitude(first - 1));
+        }
+        for (int i = first; i < buffer.size(); i++) {
+            trace = trace.append(buffer.getLatitude(i), buffer.getLongitude(i));
+        }
+    }
+
+    private void syncCheckpoints() {
+        if (engine.getCheckpoints() != checkpoints)
+        {
+            checkpoints = engine.getCheckpoints();
+            checkpointReached = new boolean[checkpoints.length];
+        }
+    }
+
+    @Override
+    public void onTaskGenerated(GameTask task) {
+        traceReset = true;
+        eventPending = true;
+        listener.onTaskGenerated(task);
+    }
+
+    @Override
+    public void onTaskCompleted(GameTask task) {
+        eventPending = true;
+        listener.onTaskCompleted(task);
+    }
+
+    @Override
+    public void onTaskSkipped(GameTask task) {
+        eventPending = true;
+        listener.onTaskSkipped(task);
+    }
+
+    @Override
+    public void onCheckpointReached(int index, GameTask checkpoint) {
+        //Copied on write, published snapshots keep the array they were built with
+        syncCheckpoints();
+        boolean[] reached = checkpointReached.clone();
+        reached[index] = true;
+        checkpointReached = reached;
+        eventPending = true;
+        listener.onCheckpointReached(index, checkpoint);
+    }
+
+    /**
+     * @return the latest published state, from any thread, the next fix then publishes again
+     */
+    public GameSnapshot getSnapshot() {
+        GameSnapshot latest = snapshot.get();
+        //Set after reading, a snapshot published in between is then published again rather than missed
+        snapshotRead.set(true);
+        return latest;
+    }
+
+    /**
+     * The engine, to be used on the game thread only.
+     */
+    public TaskEngine getEngine() {
+        return engine;
+    }
+
+    public void setObserver(Observer observer) {
+        this.observer = observer;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.health_booster.engine;
+
+/**
+ * Immutable state of the game after one fix or command, published by {@link GameLoop} for
+ * renderers on other threads. Consecutive snapshots share what did not change.
+ */
+public final class GameSnapshot {
+
+    public static final GameSnapshot EMPTY = new GameSnapshot(0, false, 0, 0, 0, null, null,
+            new GameTask[0], new boolean[0], 0, 0, 0);
+
+    private final long version;
+    private final boolean hasPosition;
+    private final double latitude;
+    private final double longitude;
+    private final long timeMillis;
+    private final GameTask task;
+    private final TracePath trace;
+    //Never modified once published, a change comes with new arrays
+    private final GameTask[] checkpoints;
+    private final boolean[] checkpointReached;
+    private final int checkpointsRemaining;
+    private final int completedCount;
+    private final double walkedMetres;
+
+    GameSnapshot(long version, boolean hasPosition, double latitude, double longitude, long timeMillis,
+                 GameTask task, TracePath trace, GameTask[] checkpoints, boolean[] checkpointReached,
+                 int checkpointsRemaining, int completedCount, double walkedMetres) {
+        this.version = version;
+        this.hasPosition = hasPosition;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timeMillis = timeMillis;
+        this.task = task;
+        this.trace = trace;
+        this.checkpoints = checkpoints;
+        this.checkpointReached = checkpointReached;
+        this.checkpointsRemaining = checkpointsRemaining;
+        this.completedCount = completedCount;
+        this.walkedMetres = walkedMetres;
+    }
+
+    /**
+     * Increases with every snapshot published by the same loop.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean hasPosition() {
+        return hasPosition;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public GameTask getTask() {
+        return task;
+    }
+
+    /**
+     * Path walked towards the current task, null if there is none.
+     */
+    public TracePath getTrace() {
+        return trace;
+    }
+
+    public int getCheckpointCount() {
+        return checkpoints.length;
+    }
+
+    public GameTask getCheckpoint(int index) {
+        return checkpoints[index];
+    }
+
+    public boolean isCheckpointReached(int index) {
+        return checkpointReached[index];
+    }
+
+    /**
+     * @return whether both snapshots show the same trail, reached checkpoints aside
+     */
+    public boolean hasSameTrail(GameSnapshot snapshot) {
+        return checkpoints == snapshot.checkpoints;
+    }
+
+    public int getCheckpointsRemaining() {
+        return checkpointsRemaining;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public double getWalkedMetres() {
+        return walkedMetres;
+    }
+
+    public double distanceToTaskMetres() {
+        if (!hasPosition || task == null)
+        {
+            return Double.NaN;
+        }
+        return Geo.distanceMetres(latitude, longitude, task.getLatitude(), task.getLongitude());
+    }
+}
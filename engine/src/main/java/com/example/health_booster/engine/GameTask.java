@@ -0,0 +1,29 @@
+package com.example.health_booster.engine;
+
+/**
+ * A location the user has to walk to.
+ */
+public class GameTask {
+
+    private final double latitude;
+    private final double longitude;
+    private final long createdAtMillis;
+
+    public GameTask(double latitude, double longitude, long createdAtMillis) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.health_booster.engine;
+
+/**
+ * Distance helpers on the earth's surface.
+ */
+public final class Geo {
+
+    //Mean earth radius
+    public static final double EARTH_RADIUS_METRES = 6371008.8;
+
+    private Geo() {
+    }
+
+    /**
+     * Equirectangular approximation, good to well below a metre for distances of a few kilometres.
+     */
+    public static double distanceMetres(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double x = Math.toRadians(longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        double y = Math.toRadians(latitude2 - latitude1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METRES;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.health_booster.engine;
+
+/**
+ * Circular area of a given radius in metres around a centre. The cosine of the centre's
+ * latitude is computed once per centre, so a check is a few multiplications without any
+ * allocation. Large radii and polar centres, where the flat approximation is off, fall back
+ * to the haversine formula.
+ */
+public class Geofence {
+
+    static final double METRES_PER_DEGREE_LATITUDE = Math.toRadians(1) * Geo.EARTH_RADIUS_METRES;
+    //Above this radius the equirectangular error is no longer negligible
+    static final double EQUIRECTANGULAR_LIMIT_METRES = 10000;
+    //Closer to the poles the longitude scale changes too much within the fence
+    static final double EQUIRECTANGULAR_LIMIT_LATITUDE = 85;
+
+    private double radiusMetres;
+    private double radiusSquared;
+    private double centreLatitude;
+    private double centreLongitude;
+    private double metresPerDegreeLongitude;
+    private boolean equirectangular;
+
+    public Geofence(double radiusMetres) {
+        setRadiusMetres(radiusMetres);
+    }
+
+    public void setRadiusMetres(double radiusMetres) {
+        this.radiusMetres = radiusMetres;
+        this.radiusSquared = radiusMetres * radiusMetres;
+        updateMode();
+    }
+
+    public void setCentre(double latitude, double longitude) {
+        centreLatitude = latitude;
+        centreLongitude = longitude;
+        metresPerDegreeLongitude = METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+        updateMode();
+    }
+
+    private void updateMode() {
+        equirectangular = radiusMetres <= EQUIRECTANGULAR_LIMIT_METRES
+                && Math.abs(centreLatitude) <= EQUIRECTANGULAR_LIMIT_LATITUDE;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        //The north-south distance alone rules out most points far away
+        double y = (latitude - centreLatitude) * METRES_PER_DEGREE_LATITUDE;
+        if (y > radiusMetres || y < -radiusMetres)
+        {
+            return false;
+        }
+        if (!equirectangular)
+        {
+            return haversineMetres(centreLatitude, centreLongitude, latitude, longitude) <= radiusMetres;
+        }
+        double x = wrapLongitude(longitude - centreLongitude) * metresPerDegreeLongitude;
+        return x * x + y * y <= radiusSquared;
+    }
+
+    private static double wrapLongitude(double degrees) {
+        if (degrees > 180)
+        {
+            return degrees - 360;
+        }
+        if (degrees < -180)
+        {
+            return degrees + 360;
+        }
+        return degrees;
+    }
+
+    public static double haversineMetres(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * Geo.EARTH_RADIUS_METRES * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public double getRadiusMetres() {
+        return radiusMetres;
+    }
+
+    public double getCentreLatitude() {
+        return centreLatitude;
+    }
+
+    public double getCentreLongitude() {
+        return centreLongitude;
+    }
+}
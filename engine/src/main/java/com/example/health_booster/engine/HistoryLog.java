@@ -0,0 +1,146 @@
+package com.example.health_booster.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append-only log of workout events in fixed-size binary records, written through a
+ * memory-mapped file. Appending does not allocate and any record, e.g. one of the last N,
+ * is read with a single seek by its index.
+ */
+public class HistoryLog implements Closeable {
+
+    public static final int TYPE_GENERATED = 1;
+    public static final int TYPE_COMPLETED = 2;
+    public static final int TYPE_SKIPPED = 3;
+    public static final int TYPE_CHECKPOINT = 4;
+
+    //Header: magic, version, record count
+    static final int MAGIC = 0x48424c47;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    //Record: time, elapsed, task lat/lng, position lat/lng, distance walked, type, reserved
+    static final int RECORD_SIZE = 64;
+    //The file grows by this many records at a time, each growth remaps it
+    static final int GROWTH_RECORDS = 1024;
+
+    /**
+     * Reusable holder a record is read into.
+     */
+    public static class Record {
+        public int type;
+        public long timeMillis;
+        public long elapsedMillis;
+        public double taskLatitude;
+        public double taskLongitude;
+        public double latitude;
+        public double longitude;
+        public double distanceMetres;
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    public HistoryLog(File path) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        try
+        {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+            {
+                map(GROWTH_RECORDS);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(8, 0);
+            }
+            else
+            {
+                map((int) Math.max(GROWTH_RECORDS, (size - HEADER_SIZE) / RECORD_SIZE));
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                {
+                    throw new IOException("Not a history log: " + path);
+                }
+                //A count beyond the mapped records can only come from a torn write
+                count = (int) Math.min(buffer.getLong(8), capacity);
+            }
+        }
+        catch (IOException e)
+        {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void map(int records) throws IOException {
+        //Mapping past the end of the file grows the file
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+        capacity = records;
+    }
+
+    public void append(int type, long timeMillis, long elapsedMillis, double taskLatitude, double taskLongitude,
+                       double latitude, double longitude, double distanceMetres) throws IOException {
+        if (count == capacity)
+        {
+            map(capacity + GROWTH_RECORDS);
+        }
+        int offset = HEADER_SIZE + count * RECORD_SIZE;
+        buffer.putLong(offset, timeMillis);
+        buffer.putLong(offset + 8, elapsedMillis);
+        buffer.putDouble(offset + 16, taskLatitude);
+        buffer.putDouble(offset + 24, taskLongitude);
+        buffer.putDouble(offset + 32, latitude);
+        buffer.putDouble(offset + 40, longitude);
+        buffer.putDouble(offset + 48, distanceMetres);
+        buffer.putInt(offset + 56, type);
+        buffer.putInt(offset + 60, 0);
+        //Publish the record only after it is completely written
+        count++;
+        buffer.putLong(8, count);
+    }
+
+    /**
+     * Reads the record at the given index, 0 being the oldest and size() - 1 the newest.
+     */
+    public Record read(int index, Record out) {
+        if (index < 0 || index >= count)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + count);
+        }
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        out.timeMillis = buffer.getLong(offset);
+        out.elapsedMillis = buffer.getLong(offset + 8);
+        out.taskLatitude = buffer.getDouble(offset + 16);
+        out.taskLongitude = buffer.getDouble(offset + 24);
+        out.latitude = buffer.getDouble(offset + 32);
+        out.longitude = buffer.getDouble(offset + 40);
+        out.distanceMetres = buffer.getDouble(offset + 48);
+        out.type = buffer.getInt(offset + 56);
+        return out;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Forces the appended records to the storage device.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+        file.close();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.health_booster.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * Team leaderboard server reached over HTTP. Every batch is POSTed as it is to
+ * {@code <base URL>/devices/<device id>/scores}, any 2xx reply means it was stored.
+ */
+public class HttpLeaderboardBackend implements LeaderboardBackend {
+
+    static final int TIMEOUT_MILLIS = 15000;
+
+    private final String baseUrl;
+
+    public HttpLeaderboardBackend(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public void upload(String deviceId, byte[] batch) throws IOException {
+        URL url = new URL(baseUrl + "/devices/" + URLEncoder.encode(deviceId, "UTF-8") + "/scores");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try
+        {
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(batch.length);
+            try (OutputStream out = connection.getOutputStream())
+            {
+                out.write(batch);
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2)
+            {
+                throw new IOException("Leaderboard replied " + status);
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.health_booster.engine;
+
+import java.io.IOException;
+
+/**
+ * Where {@link ScoreSync} uploads the scoring events of this device for the team leaderboard.
+ */
+public interface LeaderboardBackend {
+
+    /**
+     * Stores a batch written by {@link ScoreSync}, called off the game thread and allowed to block.
+     * Every event carries its history index, a batch sent again after a lost reply must count once.
+     *
+     * @throws IOException if the batch may not have arrived, it is then sent again later
+     */
+    void upload(String deviceId, byte[] batch) throws IOException;
+}
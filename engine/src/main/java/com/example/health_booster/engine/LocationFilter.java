@@ -0,0 +1,148 @@
+package com.example.health_booster.engine;
+
+/**
+ * Constant-velocity Kalman filter smoothing location fixes, weighted by each fix's accuracy.
+ * Both axes share one covariance since they have the same noise model. A filtered position is
+ * only published once it moved further than the remaining uncertainty, so GPS jitter while
+ * standing still does not cause any map work or reach a task by accident.
+ */
+public class LocationFilter {
+
+    //Acceleration noise of a walking user, in m^2/s^3
+    static final double DEFAULT_PROCESS_NOISE = 0.5;
+    //Used when a fix comes without accuracy
+    static final double DEFAULT_ACCURACY_METRES = 10;
+    //Smallest movement published, even when the filter is very confident
+    static final double MIN_SUPPRESSION_METRES = 2;
+    //A gap this long, or a jump this far, restarts the filter at the new fix
+    static final long RESET_AFTER_MILLIS = 60000;
+    static final double RESET_AFTER_METRES = 1000;
+
+    private final double processNoise;
+    private boolean initialised;
+    private long lastTimeMillis;
+    //Local plane in metres around the origin
+    private double originLatitude;
+    private double originLongitude;
+    private double metresPerDegreeLongitude;
+    private double x;
+    private double y;
+    private double velocityX;
+    private double velocityY;
+    //Covariance of position and velocity, the same for both axes
+    private double p00;
+    private double p01;
+    private double p11;
+    //Last published position
+    private double publishedX;
+    private double publishedY;
+
+    private double latitude;
+    private double longitude;
+    private int suppressedCount;
+
+    public LocationFilter() {
+        this(DEFAULT_PROCESS_NOISE);
+    }
+
+    public LocationFilter(double processNoise) {
+        this.processNoise = processNoise;
+    }
+
+    /**
+     * Feeds one fix.
+     *
+     * @return true if the filtered position moved enough to be published
+     */
+    public boolean update(double fixLatitude, double fixLongitude, float accuracyMetres, long timeMillis) {
+        double accuracy = accuracyMetres > 0 ? accuracyMetres : DEFAULT_ACCURACY_METRES;
+        double variance = accuracy * accuracy;
+        if (!initialised || timeMillis - lastTimeMillis > RESET_AFTER_MILLIS
+                || Geo.distanceMetres(latitude, longitude, fixLatitude, fixLongitude) > RESET_AFTER_METRES)
+        {
+            reset(fixLatitude, fixLongitude, variance, timeMillis);
+            return true;
+        }
+        double measuredX = (fixLongitude - originLongitude) * metresPerDegreeLongitude;
+        double measuredY = (fixLatitude - originLatitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+
+        //Predict
+        double dt = Math.max(0, timeMillis - lastTimeMillis) / 1000.0;
+        lastTimeMillis = timeMillis;
+        x += velocityX * dt;
+        y += velocityY * dt;
+        double q = processNoise;
+        p00 += dt * (2 * p01 + dt * p11) + q * dt * dt * dt / 3;
+        p01 += dt * p11 + q * dt * dt / 2;
+        p11 += q * dt;
+
+        //Correct
+        double s = p00 + variance;
+        double k0 = p00 / s;
+        double k1 = p01 / s;
+        double innovationX = measuredX - x;
+        double innovationY = measuredY - y;
+        x += k0 * innovationX;
+        y += k0 * innovationY;
+        velocityX += k1 * innovationX;
+        velocityY += k1 * innovationY;
+        p11 -= k1 * p01;
+        p01 *= 1 - k0;
+        p00 *= 1 - k0;
+
+        latitude = originLatitude + y / Geofence.METRES_PER_DEGREE_LATITUDE;
+        longitude = originLongitude + x / metresPerDegreeLongitude;
+
+        double threshold = Math.max(MIN_SUPPRESSION_METRES, Math.sqrt(p00));
+        double movedX = x - publishedX;
+        double movedY = y - publishedY;
+        if (movedX * movedX + movedY * movedY < threshold * threshold)
+        {
+            suppressedCount++;
+            return false;
+        }
+        publishedX = x;
+        publishedY = y;
+        return true;
+    }
+
+    private void reset(double fixLatitude, double fixLongitude, double variance, long timeMillis) {
+        initialised = true;
+        lastTimeMillis = timeMillis;
+        originLatitude = fixLatitude;
+        originLongitude = fixLongitude;
+        metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(fixLatitude));
+        x = y = 0;
+        velocityX = velocityY = 0;
+        p00 = variance;
+        p01 = 0;
+        //Walking pace is unknown, allow a few m/s
+        p11 = 4;
+        publishedX = publishedY = 0;
+        latitude = fixLatitude;
+        longitude = fixLongitude;
+    }
+
+    /**
+     * Filtered latitude, also of fixes that were not published.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getSpeedMetresPerSecond() {
+        return Math.sqrt(velocityX * velocityX + velocityY * velocityY);
+    }
+
+    public double getAccuracyMetres() {
+        return Math.sqrt(p00);
+    }
+
+    public int getSuppressedCount() {
+        return suppressedCount;
+    }
+}
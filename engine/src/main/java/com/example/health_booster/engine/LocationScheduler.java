@@ -0,0 +1,169 @@
+package com.example.health_booster.engine;
+
+/**
+ * Picks how often and how precisely the location is requested from the distance to the
+ * active task and the user's speed. The request stays relaxed while the task is far away
+ * and only tightens when the user is about to reach it. Without anybody looking at the screen
+ * the same request is delivered in batches instead.
+ */
+public class LocationScheduler {
+
+    public enum Accuracy {
+        HIGH,
+        BALANCED,
+        LOW_POWER
+    }
+
+    public enum Policy {
+        //Ordered from the tightest to the most relaxed request
+        NEAR(1000, 1000, Accuracy.HIGH, 0),
+        APPROACHING(5000, 2000, Accuracy.HIGH, 5),
+        FAR(15000, 5000, Accuracy.BALANCED, 25);
+
+        private final long intervalMillis;
+        private final long fastestIntervalMillis;
+        private final Accuracy accuracy;
+        private final float minDisplacementMetres;
+
+        Policy(long intervalMillis, long fastestIntervalMillis, Accuracy accuracy, float minDisplacementMetres) {
+            this.intervalMillis = intervalMillis;
+            this.fastestIntervalMillis = fastestIntervalMillis;
+            this.accuracy = accuracy;
+            this.minDisplacementMetres = minDisplacementMetres;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public long getFastestIntervalMillis() {
+            return fastestIntervalMillis;
+        }
+
+        public Accuracy getAccuracy() {
+            return accuracy;
+        }
+
+        public float getMinDisplacementMetres() {
+            return minDisplacementMetres;
+        }
+    }
+
+    //Distance to the task below which each tighter policy is used
+    static final double NEAR_METRES = 100;
+    static final double APPROACHING_METRES = 300;
+    //Seconds of movement looked ahead, so fast users tighten earlier
+    static final double LOOKAHEAD_SECONDS = 30;
+    //Extra distance needed before relaxing again, avoids flapping around a threshold
+    static final double HYSTERESIS_METRES = 20;
+    //Screen off: fixes are held back and delivered a few times a minute, for the completion check only
+    static final long BATCH_WAIT_MILLIS = 60000;
+
+    //Start tight so the first fix and the first task come quickly
+    private Policy policy = Policy.NEAR;
+    private long policySinceMillis = -1;
+    private final long[] millisInPolicy = new long[Policy.values().length];
+    private long millisBatched;
+    private int switchCount;
+    private boolean batched;
+
+    /**
+     * Feeds the latest distance to the task and speed.
+     *
+     * @return true if the policy changed and the location request has to be renewed
+     */
+    public boolean update(double distanceMetres, float speedMetresPerSecond, long nowMillis) {
+        account(nowMillis);
+        double effectiveMetres = distanceMetres - Math.max(0, speedMetresPerSecond) * LOOKAHEAD_SECONDS;
+        Policy candidate = choose(effectiveMetres);
+        if (candidate.ordinal() > policy.ordinal())
+        {
+            //Only relax as far as the distance allows with the hysteresis margin
+            Policy relaxed = choose(effectiveMetres - HYSTERESIS_METRES);
+            candidate = relaxed.ordinal() > policy.ordinal() ? relaxed : policy;
+        }
+        if (candidate == policy)
+        {
+            return false;
+        }
+        policy = candidate;
+        switchCount++;
+        return true;
+    }
+
+    /**
+     * Switches batched delivery on or off, e.g. when the screen goes off or comes back.
+     *
+     * @return true if the location request has to be renewed
+     */
+    public boolean setBatched(boolean batched, long nowMillis) {
+        if (this.batched == batched)
+        {
+            return false;
+        }
+        account(nowMillis);
+        this.batched = batched;
+        switchCount++;
+        return true;
+    }
+
+    public boolean isBatched() {
+        return batched;
+    }
+
+    private static Policy choose(double effectiveMetres) {
+        if (effectiveMetres < NEAR_METRES)
+        {
+            return Policy.NEAR;
+        }
+        if (effectiveMetres < APPROACHING_METRES)
+        {
+            return Policy.APPROACHING;
+        }
+        return Policy.FAR;
+    }
+
+    private void account(long nowMillis) {
+        if (policySinceMillis >= 0 && nowMillis > policySinceMillis)
+        {
+            millisInPolicy[policy.ordinal()] += nowMillis - policySinceMillis;
+            if (batched)
+            {
+                millisBatched += nowMillis - policySinceMillis;
+            }
+        }
+        policySinceMillis = nowMillis;
+    }
+
+    /**
+     * The request for the distance to the task, batched or not.
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * How long fixes may be held back and delivered together, 0 for no batching.
+     */
+    public long getMaxWaitMillis() {
+        return batched ? BATCH_WAIT_MILLIS : 0;
+    }
+
+    /**
+     * Time spent in the given policy up to the last update, to relate battery use to completed tasks.
+     */
+    public long getMillisInPolicy(Policy policy) {
+        return millisInPolicy[policy.ordinal()];
+    }
+
+    /**
+     * Time spent with batched delivery up to the last update, in any policy.
+     */
+    public long getMillisBatched() {
+        return millisBatched;
+    }
+
+    public int getSwitchCount() {
+        return switchCount;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.health_booster.engine;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process metrics for the hot paths: counters, per-minute meters and histograms with fixed
+ * buckets. Metrics are created once up front, recording is lock-free and does not allocate, so
+ * it can stay on in release builds. {@link #dump(Appendable, long)} writes a plain text report that
+ * can be compared between builds.
+ */
+public class Metrics {
+
+    public static class Counter {
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            count.addAndGet(delta);
+        }
+
+        public long get() {
+            return count.get();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Events per minute, the total and the last full minute.
+     */
+    public static class Meter {
+        //Minutes kept, a dump reads the one before the current
+        static final int MINUTES = 4;
+
+        private final String name;
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLongArray minuteStamps = new AtomicLongArray(MINUTES);
+        private final AtomicLongArray minuteCounts = new AtomicLongArray(MINUTES);
+
+        Meter(String name) {
+            this.name = name;
+            for (int i = 0; i < MINUTES; i++)
+            {
+                minuteStamps.set(i, -1);
+            }
+        }
+
+        public void mark(long nowMillis) {
+            mark(nowMillis, 1);
+        }
+
+        public void mark(long nowMillis, long count) {
+            total.addAndGet(count);
+            long minute = nowMillis / 60000;
+            int slot = (int) (minute % MINUTES);
+            long stamp = minuteStamps.get(slot);
+            //First event of a new minute resets the slot, racing events lose at most a few counts
+            if (stamp != minute && minuteStamps.compareAndSet(slot, stamp, minute))
+            {
+                minuteCounts.set(slot, 0);
+            }
+            minuteCounts.addAndGet(slot, count);
+        }
+
+        public long getTotal() {
+            return total.get();
+        }
+
+        /**
+         * @return events in the full minute before the current one
+         */
+        public long getLastMinute(long nowMillis) {
+            long minute = nowMillis / 60000 - 1;
+            int slot = (int) (minute % MINUTES);
+            return minuteStamps.get(slot) == minute ? minuteCounts.get(slot) : 0;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Counts values into buckets with fixed upper bounds, values above the last bound go into an
+     * overflow bucket. Percentiles are reported as the upper bound of their bucket.
+     */
+    public static class Histogram {
+        private final String name;
+        private final long[] bounds;
+        private final AtomicLongArray counts;
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        Histogram(String name, long[] bounds) {
+            this.name = name;
+            this.bounds = bounds.clone();
+            this.counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            counts.incrementAndGet(bucket(value));
+            sum.addAndGet(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value))
+            {
+                //Retry, another thread raised the maximum meanwhile
+            }
+        }
+
+        private int bucket(long value) {
+            int low = 0;
+            int high = bounds.length;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (bounds[middle] < value)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < counts.length(); i++)
+            {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        public long getSum() {
+            return sum.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return upper bound of the bucket holding the given percentile, max for the overflow bucket
+         */
+        public long getPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0)
+            {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < bounds.length; i++)
+            {
+                seen += counts.get(i);
+                if (seen >= rank)
+                {
+                    return bounds[i];
+                }
+            }
+            return getMax();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final List<Counter> counters = new ArrayList<>();
+    private final List<Meter> meters = new ArrayList<>();
+    private final List<Histogram> histograms = new ArrayList<>();
+
+    public synchronized Counter counter(String name) {
+        Counter counter = new Counter(name);
+        counters.add(counter);
+        return counter;
+    }
+
+    public synchronized Meter meter(String name) {
+        Meter meter = new Meter(name);
+        meters.add(meter);
+        return meter;
+    }
+
+    public synchronized Histogram histogram(String name, long[] bounds) {
+        Histogram histogram = new Histogram(name, bounds);
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Bounds growing by a factor, e.g. 1, 2, 4, ... for latencies spanning several magnitudes.
+     */
+    public static long[] exponentialBounds(long first, int factor, int count) {
+        long[] bounds = new long[count];
+        long bound = first;
+        for (int i = 0; i < count; i++)
+        {
+            bounds[i] = bound;
+            bound *= factor;
+        }
+        return bounds;
+    }
+
+    public synchronized void dump(Appendable out, long nowMillis) throws IOException {
+        for (Counter counter : counters)
+        {
+            out.append(counter.getName()).append(" count=").append(Long.toString(counter.get())).append('\n');
+        }
+        for (Meter meter : meters)
+        {
+            out.append(meter.getName())
+                    .append(" total=").append(Long.toString(meter.getTotal()))
+                    .append(" lastMinute=").append(Long.toString(meter.getLastMinute(nowMillis)))
+                    .append('\n');
+        }
+        for (Histogram histogram : histograms)
+        {
+            long count = histogram.getCount();
+            out.append(histogram.getName()).append(" count=").append(Long.toString(count));
+            if (count > 0)
+            {
+                out.append(" mean=").append(Long.toString(histogram.getSum() / count))
+                        .append(" p50=").append(Long.toString(histogram.getPercentile(50)))
+                        .append(" p90=").append(Long.toString(histogram.getPercentile(90)))
+                        .append(" p99=").append(Long.toString(histogram.getPercentile(99)))
+                        .append(" max=").append(Long.toString(histogram.getMax()));
+            }
+            out.append('\n');
+        }
+    }
+
+    public void dump(File file, long nowMillis) throws IOException {
+        try (Writer writer = new FileWriter(file))
+        {
+            dump(writer, nowMillis);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.health_booster.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Read-only points of interest in a memory-mapped file, indexed by a uniform grid. Records are
+ * sorted by grid cell, so a radius query binary searches each row of cells it covers and scans
+ * only the points in those cells. The data stays in the file, nothing is loaded into the heap.
+ */
+public class PoiIndex implements Closeable {
+
+    /**
+     * Receives the points found by a query.
+     */
+    public interface Visitor {
+        void visit(double latitude, double longitude);
+    }
+
+    //Header: magic, version, point count, cell size in microdegrees, reserved
+    static final int MAGIC = 0x504f4931;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    //Record: cell key, latitude and longitude in microdegrees
+    static final int RECORD_SIZE = 12;
+    //Grid columns must fit the 16 bit column part of a cell key
+    static final double MIN_CELL_DEGREES = 0.006;
+    public static final double DEFAULT_CELL_DEGREES = 0.01;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int cellMicrodegrees;
+
+    public PoiIndex(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            {
+                throw new IOException("Not a POI index: " + path);
+            }
+            count = buffer.getInt(8);
+            cellMicrodegrees = buffer.getInt(12);
+            if (count < 0 || channel.size() < HEADER_SIZE + (long) count * RECORD_SIZE || cellMicrodegrees <= 0)
+            {
+                throw new IOException("Truncated POI index: " + path);
+            }
+        }
+        catch (IOException e)
+        {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Visits every point between minMetres and maxMetres from the given position.
+     */
+    public void query(double latitude, double longitude, double minMetres, double maxMetres, Visitor visitor) {
+        double latitudeDegrees = maxMetres / Geofence.METRES_PER_DEGREE_LATITUDE;
+        double longitudeDegrees = maxMetres / (Geofence.METRES_PER_DEGREE_LATITUDE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        int firstRow = row(latitude - latitudeDegrees, cellMicrodegrees);
+        int lastRow = row(latitude + latitudeDegrees, cellMicrodegrees);
+        //Queries are not wrapped around the antimeridian
+        int firstColumn = column(Math.max(-180, longitude - longitudeDegrees), cellMicrodegrees);
+        int lastColumn = column(Math.min(180, longitude + longitudeDegrees), cellMicrodegrees);
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            int lastKey = key(row, lastColumn);
+            for (int i = lowerBound(key(row, firstColumn)); i < count; i++)
+            {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                if (buffer.getInt(offset) > lastKey)
+                {
+                    break;
+                }
+                double pointLatitude = buffer.getInt(offset + 4) / 1e6;
+                double pointLongitude = buffer.getInt(offset + 8) / 1e6;
+                double distance = Geo.distanceMetres(latitude, longitude, pointLatitude, pointLongitude);
+                if (distance >= minMetres && distance <= maxMetres)
+                {
+                    visitor.visit(pointLatitude, pointLongitude);
+                }
+            }
+        }
+    }
+
+    private int lowerBound(int key) {
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(HEADER_SIZE + middle * RECORD_SIZE) < key)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    static int row(double latitude, int cellMicrodegrees) {
+        double clamped = Math.max(-90, Math.min(90, latitude));
+        return (int) (Math.round((clamped + 90) * 1e6) / cellMicrodegrees);
+    }
+
+    static int column(double longitude, int cellMicrodegrees) {
+        return (int) (Math.round((longitude + 180) * 1e6) / cellMicrodegrees);
+    }
+
+    static int key(int row, int column) {
+        return (row << 16) | column;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Writes an index file for the given points, used to build the bundled dataset.
+     */
+    public static void write(File path, double[] latitudes, double[] longitudes, int count, double cellDegrees) throws IOException {
+        if (cellDegrees < MIN_CELL_DEGREES)
+        {
+            throw new IllegalArgumentException("Cell size below " + MIN_CELL_DEGREES + " degrees");
+        }
+        int cellMicrodegrees = (int) Math.round(cellDegrees * 1e6);
+        //Sort by cell key, the point index rides along in the low 32 bits
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            long key = key(row(latitudes[i], cellMicrodegrees), column(longitudes[i], cellMicrodegrees));
+            order[i] = (key << 32) | i;
+        }
+        Arrays.sort(order);
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE);
+        out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(cellMicrodegrees);
+        out.position(HEADER_SIZE);
+        for (long entry : order)
+        {
+            int i = (int) entry;
+            out.putInt((int) (entry >>> 32));
+            out.putInt((int) Math.round(latitudes[i] * 1e6));
+            out.putInt((int) Math.round(longitudes[i] * 1e6));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw"))
+        {
+            file.setLength(0);
+            file.write(out.array());
+        }
+    }
+}
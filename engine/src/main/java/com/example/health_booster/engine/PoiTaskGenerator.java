@@ -0,0 +1,60 @@
+package com.example.health_booster.engine;
+
+/**
+ * Places tasks at real points of interest, e.g. parks, landmarks and street corners, picked
+ * uniformly among those within the ring around the user. Where the dataset has no point in
+ * reach the fallback generator is used.
+ */
+public class PoiTaskGenerator implements TaskGenerator, PoiIndex.Visitor {
+
+    private final PoiIndex poiIndex;
+    private final SplitMix64 random;
+    private final TaskGenerator fallback;
+    private final double minMetres;
+    private final double maxMetres;
+    //Reservoir sampling state of the running query
+    private int seen;
+    private double chosenLatitude;
+    private double chosenLongitude;
+
+    public PoiTaskGenerator(PoiIndex poiIndex, long seed, TaskGenerator fallback) {
+        this(poiIndex, seed, fallback, RandomTaskGenerator.DEFAULT_MIN_METRES, RandomTaskGenerator.DEFAULT_MAX_METRES);
+    }
+
+    public PoiTaskGenerator(PoiIndex poiIndex, long seed, TaskGenerator fallback, double minMetres, double maxMetres) {
+        this.poiIndex = poiIndex;
+        this.random = new SplitMix64(seed);
+        this.fallback = fallback;
+        this.minMetres = minMetres;
+        this.maxMetres = maxMetres;
+    }
+
+    @Override
+    public boolean next(double latitude, double longitude, double[] out) {
+        seen = 0;
+        poiIndex.query(latitude, longitude, minMetres, maxMetres, this);
+        if (seen == 0)
+        {
+            return fallback.next(latitude, longitude, out);
+        }
+        out[0] = chosenLatitude;
+        out[1] = chosenLongitude;
+        return true;
+    }
+
+    @Override
+    public void visit(double latitude, double longitude) {
+        //Keeps each of the n points seen so far with probability 1/n
+        seen++;
+        if (random.nextDouble() * seen < 1)
+        {
+            chosenLatitude = latitude;
+            chosenLongitude = longitude;
+        }
+    }
+
+    @Override
+    public void refill() {
+        fallback.refill();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.health_booster.engine;
+
+/**
+ * Mutable position of the user, updated in place for every fix so the per-fix path does not
+ * allocate.
+ */
+public class Position {
+
+    private double latitude;
+    private double longitude;
+    private long timeMillis;
+
+    public void set(double latitude, double longitude, long timeMillis) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timeMillis = timeMillis;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.health_booster.engine;
+
+/**
+ * Places tasks uniformly over a ring between a minimum and a maximum distance from the user.
+ * The random source is seeded, so logging {@link #getSeed()} is enough to replay a session's
+ * tasks exactly. Upcoming offsets are precomputed in a pool, which {@link #refill()} tops up
+ * once the new task has been shown.
+ */
+public class RandomTaskGenerator implements TaskGenerator {
+
+    public static final double DEFAULT_MIN_METRES = 100;
+    public static final double DEFAULT_MAX_METRES = 500;
+    static final int POOL_SIZE = 16;
+
+    private final SplitMix64 random;
+    private final double minMetres;
+    private final double maxMetres;
+    //Offsets north and east in metres, consumed from head, refilled at tail
+    private final double[] pool = new double[POOL_SIZE * 2];
+    private int head;
+    private int available;
+    private long drawCount;
+
+    public RandomTaskGenerator(long seed) {
+        this(seed, DEFAULT_MIN_METRES, DEFAULT_MAX_METRES);
+    }
+
+    public RandomTaskGenerator(long seed, double minMetres, double maxMetres) {
+        if (minMetres < 0 || maxMetres < minMetres)
+        {
+            throw new IllegalArgumentException("Invalid ring " + minMetres + ".." + maxMetres + " m");
+        }
+        this.random = new SplitMix64(seed);
+        this.minMetres = minMetres;
+        this.maxMetres = maxMetres;
+        refill();
+    }
+
+    @Override
+    public boolean next(double latitude, double longitude, double[] out) {
+        if (available == 0)
+        {
+            refill();
+        }
+        int slot = head * 2;
+        head = (head + 1) % POOL_SIZE;
+        available--;
+        drawCount++;
+        out[0] = latitude + pool[slot] / Geofence.METRES_PER_DEGREE_LATITUDE;
+        out[1] = longitude + pool[slot + 1] / (Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude)));
+        return true;
+    }
+
+    /**
+     * Computes the candidates consumed since the last refill.
+     */
+    @Override
+    public void refill() {
+        double minSquared = minMetres * minMetres;
+        double maxSquared = maxMetres * maxMetres;
+        while (available < POOL_SIZE)
+        {
+            //Uniform over the ring's area, not its radius, so far tasks are not under-represented
+            double distance = Math.sqrt(minSquared + random.nextDouble() * (maxSquared - minSquared));
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            int slot = ((head + available) % POOL_SIZE) * 2;
+            pool[slot] = distance * Math.cos(bearing);
+            pool[slot + 1] = distance * Math.sin(bearing);
+            available++;
+        }
+    }
+
+    public long getSeed() {
+        return random.getSeed();
+    }
+
+    /**
+     * Tasks generated so far, together with the seed this pinpoints a task in a session.
+     */
+    public long getDrawCount() {
+        return drawCount;
+    }
+
+    public double getMinMetres() {
+        return minMetres;
+    }
+
+    public double getMaxMetres() {
+        return maxMetres;
+    }
+}
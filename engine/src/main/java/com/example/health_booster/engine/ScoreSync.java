@@ -0,0 +1,227 @@
+package com.example.health_booster.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads completed tasks and reached checkpoints to a {@link LeaderboardBackend}, offline first.
+ * The {@link HistoryLog} on disk is the queue: a cursor marks how many of its records the backend
+ * acknowledged, and each batch is read from the log just before it is sent. Being offline for
+ * days therefore only grows the log, memory holds at most one batch of
+ * {@link #MAX_BATCH_EVENTS}. Failed uploads are retried with exponential backoff and jitter,
+ * regained connectivity retries right away. Game thread only, the upload itself may run elsewhere.
+ */
+public class ScoreSync {
+
+    /**
+     * Gzip-compressed events of one upload, covering the history records from first to end.
+     */
+    public static class Batch {
+        private final int firstIndex;
+        private final int endIndex;
+        private final int eventCount;
+        private final byte[] data;
+
+        Batch(int firstIndex, int endIndex, int eventCount, byte[] data) {
+            this.firstIndex = firstIndex;
+            this.endIndex = endIndex;
+            this.eventCount = eventCount;
+            this.data = data;
+        }
+
+        public int getFirstIndex() {
+            return firstIndex;
+        }
+
+        /**
+         * One past the last history record covered, the cursor once the batch is acknowledged.
+         */
+        public int getEndIndex() {
+            return endIndex;
+        }
+
+        public int getEventCount() {
+            return eventCount;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Receives the events of a batch as read by {@link #readBatch(byte[], Events)}.
+     */
+    public interface Events {
+        void onEvent(long sequence, int type, long timeMillis, long elapsedMillis, float distanceMetres);
+    }
+
+    static final int MAX_BATCH_EVENTS = 256;
+    static final int BATCH_MAGIC = 0x48425342;
+    static final int BATCH_VERSION = 1;
+    public static final long MIN_BACKOFF_MILLIS = 30000;
+    //Once an hour while offline for days
+    public static final long MAX_BACKOFF_MILLIS = 3600000;
+
+    private final HistoryLog historyLog;
+    private final HistoryLog.Record record = new HistoryLog.Record();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final SplitMix64 jitter;
+    //History records covered by acknowledged batches
+    private int uploadedCount;
+    private Batch inFlight;
+    private int failures;
+    private long nextAttemptMillis;
+
+    /**
+     * @param uploadedCount the persisted cursor, 0 on first use
+     */
+    public ScoreSync(HistoryLog historyLog, int uploadedCount, long seed) {
+        this.historyLog = historyLog;
+        this.uploadedCount = Math.min(uploadedCount, historyLog.size());
+        this.jitter = new SplitMix64(seed);
+    }
+
+    private static boolean isScoring(int type) {
+        return type == HistoryLog.TYPE_COMPLETED || type == HistoryLog.TYPE_CHECKPOINT;
+    }
+
+    /**
+     * Reads the next events to upload from the history.
+     *
+     * @return null if nothing is pending, a batch is still in flight or the backoff has not passed
+     */
+    public Batch nextBatch(long nowMillis) throws IOException {
+        if (inFlight != null || nowMillis < nextAttemptMillis)
+        {
+            return null;
+        }
+        int size = historyLog.size();
+        int end = uploadedCount;
+        int events = 0;
+        while (end < size && events < MAX_BATCH_EVENTS)
+        {
+            if (isScoring(historyLog.read(end, record).type))
+            {
+                events++;
+            }
+            end++;
+        }
+        if (events == 0)
+        {
+            //Generated and skipped tasks only, nothing to tell the leaderboard
+            uploadedCount = end;
+            return null;
+        }
+        bytes.reset();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes)))
+        {
+            out.writeInt(BATCH_MAGIC);
+            out.writeInt(BATCH_VERSION);
+            out.writeInt(events);
+            for (int i = uploadedCount; i < end; i++) {
+                historyLog.read(i, record);
+                if (isScoring(record.type))
+                {
+                    out.writeLong(i);
+                    out.writeByte(record.type);
+                    out.writeLong(record.timeMillis);
+                    out.writeLong(record.elapsedMillis);
+                    out.writeFloat((float) record.distanceMetres);
+                }
+            }
+        }
+        inFlight = new Batch(uploadedCount, end, events, bytes.toByteArray());
+        return inFlight;
+    }
+
+    /**
+     * The backend stored the batch, the cursor moves past it.
+     */
+    public void onUploaded(Batch batch) {
+        if (batch != inFlight)
+        {
+            return;
+        }
+        inFlight = null;
+        failures = 0;
+        nextAttemptMillis = 0;
+        uploadedCount = batch.getEndIndex();
+    }
+
+    /**
+     * The upload failed, the same records are sent again after the backoff.
+     */
+    public void onFailed(Batch batch, long nowMillis) {
+        if (batch != inFlight)
+        {
+            return;
+        }
+        inFlight = null;
+        failures++;
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(failures - 1, 20));
+        //Half fixed, half random, so devices coming back online together do not retry together
+        nextAttemptMillis = nowMillis + backoff / 2 + (long) (jitter.nextDouble() * (backoff / 2));
+    }
+
+    /**
+     * Connectivity came back, a pending retry is not worth waiting for any more.
+     */
+    public void onConnected(long nowMillis) {
+        nextAttemptMillis = Math.min(nextAttemptMillis, nowMillis);
+    }
+
+    /**
+     * Decodes a batch, for backends.
+     *
+     * @return the number of events
+     */
+    public static int readBatch(byte[] data, Events events) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data))))
+        {
+            if (in.readInt() != BATCH_MAGIC || in.readInt() != BATCH_VERSION)
+            {
+                throw new IOException("Not a score batch");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                events.onEvent(in.readLong(), in.readByte(), in.readLong(), in.readLong(), in.readFloat());
+            }
+            return count;
+        }
+    }
+
+    /**
+     * The cursor to persist, history records before it are on the backend.
+     */
+    public int getUploadedCount() {
+        return uploadedCount;
+    }
+
+    /**
+     * History records not acknowledged yet, scoring or not.
+     */
+    public int getPendingCount() {
+        return historyLog.size() - uploadedCount;
+    }
+
+    public boolean isInFlight() {
+        return inFlight != null;
+    }
+
+    public int getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * @return when the next batch may be sent, 0 if right away
+     */
+    public long getNextAttemptMillis() {
+        return nextAttemptMillis;
+    }
+}
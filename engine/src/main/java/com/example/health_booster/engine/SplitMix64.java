@@ -0,0 +1,36 @@
+package com.example.health_booster.engine;
+
+/**
+ * The SplitMix64 generator behind java.util.SplittableRandom, which is only available from
+ * Android API 24. Deterministic for a given seed, so a sequence of tasks can be replayed.
+ */
+public class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+    private long state;
+
+    public SplitMix64(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Uniform in [0, 1).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.health_booster.engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Tasks completed and skipped, distance walked and time to complete per day, updated on every
+ * completion and skip instead of rescanning the history. Each of the last {@link #DAYS} days has
+ * a slot in primitive ring arrays holding running totals up to the end of that day, so the totals
+ * of any day, week, month or range within the last 365 days are one subtraction. Game thread only.
+ */
+public class StatsRollup {
+
+    //Slots, one more than the days a range may span, for the total before its first day
+    static final int DAYS = 366;
+    public static final int MAX_RANGE_DAYS = DAYS - 1;
+    static final long MILLIS_PER_DAY = 86400000L;
+    static final int MAGIC = 0x48425352;
+    static final int VERSION = 1;
+    private static final int NO_DAY = Integer.MIN_VALUE;
+
+    /**
+     * Reusable holder the totals of a range are read into.
+     */
+    public static class Totals {
+        public int completed;
+        public int skipped;
+        public double distanceMetres;
+        public long completeMillis;
+
+        /**
+         * @return mean time from a task's creation to its completion, -1 without completions
+         */
+        public long getAverageCompleteMillis() {
+            return completed == 0 ? -1 : completeMillis / completed;
+        }
+    }
+
+    //Running totals at the end of each day, indexed by day modulo DAYS
+    private final int[] completed = new int[DAYS];
+    private final int[] skipped = new int[DAYS];
+    private final double[] distanceMetres = new double[DAYS];
+    private final long[] completeMillis = new long[DAYS];
+    //Totals are zero before the first day recorded
+    private int firstDay = NO_DAY;
+    private int lastDay = NO_DAY;
+    private boolean dirty;
+
+    /**
+     * Local day number of a time, days since 1970-01-01 in the time zone with the given offset.
+     */
+    public static int dayOf(long timeMillis, long offsetMillis) {
+        long localMillis = timeMillis + offsetMillis;
+        //Rounded down also before 1970, Math.floorDiv() needs API 24
+        return (int) (localMillis >= 0 ? localMillis / MILLIS_PER_DAY : (localMillis + 1) / MILLIS_PER_DAY - 1);
+    }
+
+    /**
+     * @return the Monday starting the week of the day
+     */
+    public static int weekStart(int day) {
+        //1970-01-01 was a Thursday
+        return day - mod(day + 3, 7);
+    }
+
+    /**
+     * @return the first day of the month of the day
+     */
+    public static int monthStart(int day) {
+        //Inverse of FixTrace.daysFromCivil(), only the year and month are needed
+        int shifted = day + 719468;
+        int era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        int dayOfEra = shifted - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) FixTrace.daysFromCivil(year, month, 1);
+    }
+
+    public void onCompleted(int day, long completeMillis, double distanceMetres) {
+        add(day, 1, 0, distanceMetres, completeMillis);
+    }
+
+    public void onSkipped(int day, double distanceMetres) {
+        add(day, 0, 1, distanceMetres, 0);
+    }
+
+    private void add(int day, int completedDelta, int skippedDelta, double distanceDelta, long completeMillisDelta) {
+        if (lastDay == NO_DAY)
+        {
+            firstDay = day;
+            lastDay = day;
+        }
+        else if (day > lastDay)
+        {
+            advanceTo(day);
+        }
+        else if (day <= lastDay - DAYS)
+        {
+            //Older than the ring, e.g. after the clock was set back a year
+            return;
+        }
+        if (day < firstDay)
+        {
+            firstDay = day;
+        }
+        //A day before the latest, after a clock change, also moves every later running total
+        for (int d = day; d <= lastDay; d++) {
+            int slot = slot(d);
+            completed[slot] += completedDelta;
+            skipped[slot] += skippedDelta;
+            distanceMetres[slot] += distanceDelta;
+            completeMillis[slot] += completeMillisDelta;
+        }
+        dirty = true;
+    }
+
+    private void advanceTo(int day) {
+        //Days without events carry the running totals on, at most a full ring of them
+        int from = slot(lastDay);
+        int first = Math.max(lastDay + 1, day - DAYS + 1);
+        for (int d = first; d <= day; d++) {
+            int slot = slot(d);
+            completed[slot] = completed[from];
+            skipped[slot] = skipped[from];
+            distanceMetres[slot] = distanceMetres[from];
+            completeMillis[slot] = completeMillis[from];
+        }
+        lastDay = day;
+    }
+
+    private static int slot(int day) {
+        return mod(day, DAYS);
+    }
+
+    private static int mod(int value, int divisor) {
+        int remainder = value % divisor;
+        return remainder < 0 ? remainder + divisor : remainder;
+    }
+
+    /**
+     * Totals of the inclusive range of days, those older than {@link #MAX_RANGE_DAYS} before
+     * the latest day recorded count as empty.
+     */
+    public Totals query(int fromDay, int toDay, Totals out) {
+        out.completed = 0;
+        out.skipped = 0;
+        out.distanceMetres = 0;
+        out.completeMillis = 0;
+        if (lastDay == NO_DAY)
+        {
+            return out;
+        }
+        int end = Math.min(toDay, lastDay);
+        //The running total before the range, the oldest slot holds the one before the ring's range
+        int before = Math.max(fromDay - 1, lastDay - DAYS + 1);
+        if (end <= before || end < firstDay)
+        {
+            return out;
+        }
+        int endSlot = slot(end);
+        out.completed = completed[endSlot];
+        out.skipped = skipped[endSlot];
+        out.distanceMetres = distanceMetres[endSlot];
+        out.completeMillis = completeMillis[endSlot];
+        if (before >= firstDay)
+        {
+            int beforeSlot = slot(before);
+            out.completed -= completed[beforeSlot];
+            out.skipped -= skipped[beforeSlot];
+            out.distanceMetres -= distanceMetres[beforeSlot];
+            out.completeMillis -= completeMillis[beforeSlot];
+        }
+        return out;
+    }
+
+    public Totals queryDay(int day, Totals out) {
+        return query(day, day, out);
+    }
+
+    public Totals queryWeek(int day, Totals out) {
+        int start = weekStart(day);
+        return query(start, start + 6, out);
+    }
+
+    public Totals queryMonth(int day, Totals out) {
+        return query(monthStart(day), monthStart(monthStart(day) + 31) - 1, out);
+    }
+
+    /**
+     * Totals of the given number of days up to and including today, at most {@link #MAX_RANGE_DAYS}.
+     */
+    public Totals queryLastDays(int today, int days, Totals out) {
+        return query(today - Math.min(days, MAX_RANGE_DAYS) + 1, today, out);
+    }
+
+    /**
+     * Writes the ring, about 9 KB, for {@link #readFrom(DataInput)}.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(firstDay);
+        out.writeInt(lastDay);
+        for (int slot = 0; slot < DAYS; slot++) {
+            out.writeInt(completed[slot]);
+            out.writeInt(skipped[slot]);
+            out.writeDouble(distanceMetres[slot]);
+            out.writeLong(completeMillis[slot]);
+        }
+        dirty = false;
+    }
+
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            throw new IOException("Not a stats rollup");
+        }
+        firstDay = in.readInt();
+        lastDay = in.readInt();
+        for (int slot = 0; slot < DAYS; slot++) {
+            completed[slot] = in.readInt();
+            skipped[slot] = in.readInt();
+            distanceMetres[slot] = in.readDouble();
+            completeMillis[slot] = in.readLong();
+        }
+        dirty = false;
+    }
+
+    /**
+     * @return whether anything was recorded since the last write or read
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * The latest day recorded, Integer.MIN_VALUE if none was.
+     */
+    public int getLastDay() {
+        return lastDay;
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.health_booster.engine;
+
+/**
+ * The game without any Android or Play Services types: generates tasks around the user,
+ * decides when a task is completed and keeps track of the distance walked towards it.
+ * Events are reported to a {@link Listener}, which does the rendering and persistence.
+ */
+public class TaskEngine {
+
+    //Every event does nothing by default, listeners override those they handle
+    public interface Listener {
+        default void onTaskGenerated(GameTask task) {
+        }
+
+        default void onTaskCompleted(GameTask task) {
+        }
+
+        default void onTaskSkipped(GameTask task) {
+        }
+
+        //Only trails report checkpoints, listeners for single tasks need not handle them
+        default void onCheckpointReached(int index, GameTask checkpoint) {
+        }
+    }
+
+    //Distance from the task counting as reached
+    public static final double DEFAULT_COMPLETION_RADIUS_METRES = 50;
+    //Points kept of the path walked towards a task and how far they may be simplified
+    static final int TRACE_CAPACITY = 2048;
+    static final double TRACE_TOLERANCE_METRES = 5;
+    private final Listener listener;
+    private TaskGenerator taskGenerator;
+    private final double[] generated = new double[2];
+    private final Position position = new Position();
+    private boolean hasPosition;
+    private GameTask task;
+    private final Geofence geofence = new Geofence(DEFAULT_COMPLETION_RADIUS_METRES);
+    private double walkedMetres;
+    private final TraceBuffer trace = new TraceBuffer(TRACE_CAPACITY, TRACE_TOLERANCE_METRES);
+    private int traceChange = TraceBuffer.IGNORED;
+    //Optional smoothing between the location source and the game logic
+    private LocationFilter locationFilter;
+    private int completedCount;
+    //Trail mode, many checkpoints active at once next to the current task
+    private CheckpointIndex checkpointIndex;
+    private GameTask[] checkpoints = new GameTask[0];
+    private int checkpointsReached;
+
+    public TaskEngine(Listener listener) {
+        this(listener, new RandomTaskGenerator(System.nanoTime()));
+    }
+
+    public TaskEngine(Listener listener, TaskGenerator taskGenerator) {
+        this.listener = listener;
+        this.taskGenerator = taskGenerator;
+    }
+
+    public boolean onFix(double latitude, double longitude, long timeMillis) {
+        return onFix(latitude, longitude, 0, timeMillis);
+    }
+
+    /**
+     * Processes one location fix, generating the first task or completing the current one.
+     *
+     * @param accuracyMetres accuracy of the fix, 0 if unknown
+     * @return false if the fix was filtered out as noise and nothing changed
+     */
+    public boolean onFix(double latitude, double longitude, float accuracyMetres, long timeMillis) {
+        if (locationFilter != null)
+        {
+            if (!locationFilter.update(latitude, longitude, accuracyMetres, timeMillis))
+            {
+                traceChange = TraceBuffer.IGNORED;
+                return false;
+            }
+            latitude = locationFilter.getLatitude();
+            longitude = locationFilter.getLongitude();
+        }
+        //Count the distance walked towards the current task
+        if (hasPosition && task != null)
+        {
+            walkedMetres += Geo.distanceMetres(position.getLatitude(), position.getLongitude(), latitude, longitude);
+        }
+        position.set(latitude, longitude, timeMillis);
+        hasPosition = true;
+        traceChange = task != null ? trace.add(latitude, longitude) : TraceBuffer.IGNORED;
+        //If no tasks yet, generate one
+        if (task == null)
+        {
+            nextTask(false, timeMillis);
+        }
+        //Else check if the task is completed
+        else if (geofence.contains(latitude, longitude))
+        {
+            completedCount++;
+            listener.onTaskCompleted(task);
+            //Done either way, if no next task can be placed the following fixes try again
+            task = null;
+            nextTask(false, timeMillis);
+        }
+        if (checkpointIndex != null && checkpointIndex.getActiveCount() > 0)
+        {
+            reachCheckpoints(latitude, longitude);
+        }
+        return true;
+    }
+
+    private void reachCheckpoints(double latitude, double longitude) {
+        //Checkpoints may lie close together, one fix can reach several
+        int index;
+        while ((index = checkpointIndex.findWithin(latitude, longitude)) >= 0)
+        {
+            checkpointIndex.remove(index);
+            checkpointsReached++;
+            listener.onCheckpointReached(index, checkpoints[index]);
+        }
+        //The trail is over once every checkpoint is reached, ended here as listeners must not change the engine
+        if (checkpointIndex.getActiveCount() == 0)
+        {
+            endTrail();
+        }
+    }
+
+    /**
+     * Places a trail of checkpoints around the user, they are reached in any order while the
+     * current task stays active.
+     *
+     * @return false if there is no position yet or not every checkpoint could be placed
+     */
+    public boolean startTrail(int count, long timeMillis) {
+        if (!hasPosition)
+        {
+            return false;
+        }
+        CheckpointIndex index = new CheckpointIndex(geofence.getRadiusMetres(), position.getLatitude(), count);
+        GameTask[] trail = new GameTask[count];
+        for (int i = 0; i < count; i++)
+        {
+            if (!taskGenerator.next(position.getLatitude(), position.getLongitude(), generated))
+            {
+                return false;
+            }
+            trail[i] = new GameTask(generated[0], generated[1], timeMillis);
+            index.add(generated[0], generated[1]);
+        }
+        taskGenerator.refill();
+        checkpointIndex = index;
+        checkpoints = trail;
+        checkpointsReached = 0;
+        return true;
+    }
+
+    public void endTrail() {
+        checkpointIndex = null;
+        checkpoints = new GameTask[0];
+    }
+
+    /**
+     * Replaces the current task with a new one around the user.
+     *
+     * @param skipped whether the user asked for it, the current task is then reported as skipped
+     * @return false if there is no position yet or no task could be placed around it
+     */
+    public boolean nextTask(boolean skipped, long timeMillis) {
+        //Generating tasks requires user's current location so check for it first
+        if (!hasPosition || !taskGenerator.next(position.getLatitude(), position.getLongitude(), generated))
+        {
+            return false;
+        }
+        if (skipped && task != null)
+        {
+            listener.onTaskSkipped(task);
+        }
+        task = new GameTask(generated[0], generated[1], timeMillis);
+        geofence.setCentre(task.getLatitude(), task.getLongitude());
+        walkedMetres = 0;
+        //The path towards the new task starts here
+        trace.clear();
+        traceChange = trace.add(position.getLatitude(), position.getLongitude());
+        listener.onTaskGenerated(task);
+        //Prepare the next candidates only after the new task is out
+        taskGenerator.refill();
+        return true;
+    }
+
+    public double distanceToTaskMetres() {
+        if (!hasPosition || task == null)
+        {
+            return Double.NaN;
+        }
+        return Geo.distanceMetres(position.getLatitude(), position.getLongitude(), task.getLatitude(), task.getLongitude());
+    }
+
+    public void setPosition(double latitude, double longitude, long timeMillis) {
+        position.set(latitude, longitude, timeMillis);
+        hasPosition = true;
+    }
+
+    public boolean hasPosition() {
+        return hasPosition;
+    }
+
+    public Position getPosition() {
+        return position;
+    }
+
+    public GameTask getTask() {
+        return task;
+    }
+
+    public void setTask(GameTask task) {
+        this.task = task;
+        geofence.setCentre(task.getLatitude(), task.getLongitude());
+        walkedMetres = 0;
+    }
+
+    public TaskGenerator getTaskGenerator() {
+        return taskGenerator;
+    }
+
+    public void setTaskGenerator(TaskGenerator taskGenerator) {
+        this.taskGenerator = taskGenerator;
+    }
+
+    public LocationFilter getLocationFilter() {
+        return locationFilter;
+    }
+
+    public void setLocationFilter(LocationFilter locationFilter) {
+        this.locationFilter = locationFilter;
+    }
+
+    public TraceBuffer getTrace() {
+        return trace;
+    }
+
+    /**
+     * How the trace changed with the last fix or task, one of the TraceBuffer.add() results.
+     */
+    public int getTraceChange() {
+        return traceChange;
+    }
+
+    public double getCompletionRadiusMetres() {
+        return geofence.getRadiusMetres();
+    }
+
+    public void setCompletionRadiusMetres(double radiusMetres) {
+        geofence.setRadiusMetres(radiusMetres);
+    }
+
+    public double getWalkedMetres() {
+        return walkedMetres;
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    /**
+     * Checkpoints of the current trail by index, including the ones already reached.
+     */
+    public GameTask[] getCheckpoints() {
+        return checkpoints;
+    }
+
+    public boolean isCheckpointReached(int index) {
+        return checkpointIndex == null || !checkpointIndex.isActive(index);
+    }
+
+    public int getCheckpointsRemaining() {
+        return checkpointIndex == null ? 0 : checkpointIndex.getActiveCount();
+    }
+
+    public int getCheckpointsReached() {
+        return checkpointsReached;
+    }
+}
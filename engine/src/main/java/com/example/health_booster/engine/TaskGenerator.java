@@ -0,0 +1,19 @@
+package com.example.health_booster.engine;
+
+/**
+ * Strategy placing a new task around the user.
+ */
+public interface TaskGenerator {
+
+    /**
+     * Writes the latitude and longitude of the next task into out[0] and out[1].
+     *
+     * @return false if no task can be placed around this position
+     */
+    boolean next(double latitude, double longitude, double[] out);
+
+    /**
+     * Called once a new task is out, time to precompute upcoming candidates if there are any.
+     */
+    void refill();
+}
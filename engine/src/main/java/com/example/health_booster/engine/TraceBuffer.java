@@ -0,0 +1,107 @@
+package com.example.health_booster.engine;
+
+/**
+ * Walked path kept as latitude/longitude pairs in a primitive ring buffer, simplified while
+ * points arrive: a point closer than the tolerance to the last kept point is dropped, and a
+ * last point lying within the tolerance of the straight line to the new point is replaced by
+ * it. When full, the oldest point is overwritten.
+ */
+public class TraceBuffer {
+
+    //What add() did, so a renderer can mirror it without rebuilding the whole path
+    public static final int IGNORED = 0;
+    public static final int APPENDED = 1;
+    public static final int REPLACED = 2;
+
+    private final double[] points;
+    private final int capacity;
+    private final double toleranceMetres;
+    private int start;
+    private int size;
+
+    public TraceBuffer(int capacity, double toleranceMetres) {
+        this.points = new double[capacity * 2];
+        this.capacity = capacity;
+        this.toleranceMetres = toleranceMetres;
+    }
+
+    public int add(double latitude, double longitude) {
+        if (size > 0)
+        {
+            int last = slot(size - 1);
+            double lastLatitude = points[last];
+            double lastLongitude = points[last + 1];
+            //Radial distance, the user has not visibly moved
+            if (Geo.distanceMetres(lastLatitude, lastLongitude, latitude, longitude) < toleranceMetres)
+            {
+                return IGNORED;
+            }
+            if (size > 1)
+            {
+                int previous = slot(size - 2);
+                if (offLineMetres(points[previous], points[previous + 1], latitude, longitude, lastLatitude, lastLongitude) < toleranceMetres)
+                {
+                    //Still walking straight, extend the last segment instead of adding one
+                    points[last] = latitude;
+                    points[last + 1] = longitude;
+                    return REPLACED;
+                }
+            }
+        }
+        if (size == capacity)
+        {
+            start = (start + 1) % capacity;
+            size--;
+        }
+        int slot = slot(size);
+        points[slot] = latitude;
+        points[slot + 1] = longitude;
+        size++;
+        return APPENDED;
+    }
+
+    /**
+     * Distance of a point from the segment between two others, on a plane around the segment start.
+     */
+    static double offLineMetres(double startLatitude, double startLongitude, double endLatitude, double endLongitude,
+                                double latitude, double longitude) {
+        double metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(startLatitude));
+        double segmentX = (endLongitude - startLongitude) * metresPerDegreeLongitude;
+        double segmentY = (endLatitude - startLatitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+        double pointX = (longitude - startLongitude) * metresPerDegreeLongitude;
+        double pointY = (latitude - startLatitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+        double lengthSquared = segmentX * segmentX + segmentY * segmentY;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (pointX * segmentX + pointY * segmentY) / lengthSquared));
+        double x = pointX - t * segmentX;
+        double y = pointY - t * segmentY;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    private int slot(int index) {
+        return ((start + index) % capacity) * 2;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Latitude of the point at the given index, 0 being the oldest kept point.
+     */
+    public double getLatitude(int index) {
+        return points[slot(index)];
+    }
+
+    public double getLongitude(int index) {
+        return points[slot(index) + 1];
+    }
+}
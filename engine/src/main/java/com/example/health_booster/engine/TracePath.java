@@ -0,0 +1,78 @@
+package com.example.health_booster.engine;
+
+/**
+ * The walked path as an immutable list of points, newest first. Appending a point or replacing
+ * the last one creates a single node and shares the rest, so every {@link GameSnapshot} can hold
+ * the path without copying it, and a renderer tells an append from a replacement by comparing
+ * nodes instead of points.
+ */
+public final class TracePath {
+
+    private final double latitude;
+    private final double longitude;
+    private final TracePath previous;
+    private final int size;
+
+    private TracePath(double latitude, double longitude, TracePath previous) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.previous = previous;
+        this.size = previous == null ? 1 : previous.size + 1;
+    }
+
+    /**
+     * @return the points of the buffer, null if it is empty
+     */
+    public static TracePath of(TraceBuffer trace) {
+        TracePath path = null;
+        for (int i = 0; i < trace.size(); i++)
+        {
+            path = new TracePath(trace.getLatitude(i), trace.getLongitude(i), path);
+        }
+        return path;
+    }
+
+    public TracePath append(double latitude, double longitude) {
+        return new TracePath(latitude, longitude, this);
+    }
+
+    public TracePath replaceLast(double latitude, double longitude) {
+        return new TracePath(latitude, longitude, previous);
+    }
+
+    /**
+     * @return whether this path is the given one with one more point
+     */
+    public boolean isAppendedTo(TracePath path) {
+        return path != null && previous == path;
+    }
+
+    /**
+     * @return whether this path is the given one with its last point moved
+     */
+    public boolean isReplacementOf(TracePath path) {
+        return path != null && path != this && previous == path.previous && size == path.size;
+    }
+
+    /**
+     * Latitude of the newest point.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the path without the newest point, null if this is the first
+     */
+    public TracePath getPrevious() {
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.health_booster.engine;
+
+/**
+ * Plays a {@link FixTrace} back as if the fixes were arriving now, 1 to 1000 times faster than
+ * recorded. Fix times keep their recorded spacing from a given base time, only the wall clock
+ * delay between fixes is shortened, so the location filter and walking speeds see the real walk.
+ * The caller either schedules {@link #deliverNext} after {@link #getDelayToNextMillis()}, e.g. on
+ * a Handler, or runs the whole trace on the current thread with {@link #run}.
+ */
+public class TraceReplay {
+
+    public static final double MIN_SPEED = 1;
+    public static final double MAX_SPEED = 1000;
+
+    /**
+     * Receives the replayed fixes.
+     */
+    public interface Sink {
+        void onFix(double latitude, double longitude, float accuracyMetres, long timeMillis);
+    }
+
+    private final FixTrace trace;
+    private final double speed;
+    private int next;
+
+    public TraceReplay(FixTrace trace, double speed) {
+        if (speed < MIN_SPEED || speed > MAX_SPEED)
+        {
+            throw new IllegalArgumentException("Replay speed " + speed + " outside " + MIN_SPEED + ".." + MAX_SPEED);
+        }
+        this.trace = trace;
+        this.speed = speed;
+    }
+
+    public boolean hasNext() {
+        return next < trace.size();
+    }
+
+    /**
+     * Wall clock time between the previous fix and the next one at this speed.
+     */
+    public long getDelayToNextMillis() {
+        if (next == 0 || !hasNext())
+        {
+            return 0;
+        }
+        return (long) ((trace.getTimeMillis(next) - trace.getTimeMillis(next - 1)) / speed);
+    }
+
+    /**
+     * @param baseTimeMillis time given to the first fix of the trace
+     */
+    public void deliverNext(Sink sink, long baseTimeMillis) {
+        int index = next++;
+        sink.onFix(trace.getLatitude(index), trace.getLongitude(index), trace.getAccuracy(index),
+                baseTimeMillis + trace.getTimeMillis(index) - trace.getTimeMillis(0));
+    }
+
+    /**
+     * Delivers the remaining fixes as fast as possible, for tests and benchmarks.
+     *
+     * @return number of fixes delivered
+     */
+    public int deliverAll(Sink sink, long baseTimeMillis) {
+        int delivered = 0;
+        while (hasNext())
+        {
+            deliverNext(sink, baseTimeMillis);
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * Delivers the remaining fixes on the current thread at the replay speed. Each fix is due at
+     * a fixed offset from the start, so time spent in the sink does not add up as drift.
+     */
+    public void run(Sink sink, long baseTimeMillis) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        int first = next;
+        while (hasNext())
+        {
+            long dueNanos = startNanos + (long) ((trace.getTimeMillis(next) - trace.getTimeMillis(first)) * 1e6 / speed);
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0)
+            {
+                Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+            }
+            deliverNext(sink, baseTimeMillis);
+        }
+    }
+
+    public void rewind() {
+        next = 0;
+    }
+
+    public int getPosition() {
+        return next;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CheckpointIndexTest {
+
+    @Test
+    public void findsCheckpointWithinRadiusOnly() {
+        CheckpointIndex index = new CheckpointIndex(50, 22.3, 4);
+        int id = index.add(22.3, 114.17);
+        assertEquals(id, index.findWithin(22.3004, 114.17));
+        //About 55 m north
+        assertEquals(-1, index.findWithin(22.3005, 114.17));
+    }
+
+    @Test
+    public void removedCheckpointIsNotFoundAgain() {
+        CheckpointIndex index = new CheckpointIndex(50, 22.3, 4);
+        int first = index.add(22.3, 114.17);
+        int second = index.add(22.3001, 114.17);
+        assertTrue(index.remove(index.findWithin(22.3, 114.17)));
+        int next = index.findWithin(22.3, 114.17);
+        assertTrue(next == first || next == second);
+        assertTrue(index.remove(next));
+        assertEquals(-1, index.findWithin(22.3, 114.17));
+        assertFalse(index.remove(first));
+        assertEquals(0, index.getActiveCount());
+    }
+
+    @Test
+    public void matchesLinearScanAcrossGrowth() {
+        Random random = new Random(7);
+        CheckpointIndex index = new CheckpointIndex(50, 22.3, 16);
+        int count = 5000;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++)
+        {
+            latitudes[i] = 22.3 + random.nextDouble() * 0.05;
+            longitudes[i] = 114.17 + random.nextDouble() * 0.05;
+            assertEquals(i, index.add(latitudes[i], longitudes[i]));
+        }
+        double metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(22.3));
+        for (int query = 0; query < 1000; query++)
+        {
+            double latitude = 22.3 + random.nextDouble() * 0.05;
+            double longitude = 114.17 + random.nextDouble() * 0.05;
+            boolean expected = false;
+            for (int i = 0; i < count && !expected; i++)
+            {
+                double east = (longitudes[i] - longitude) * metresPerDegreeLongitude;
+                double north = (latitudes[i] - latitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+                expected = east * east + north * north <= 50 * 50;
+            }
+            assertEquals(expected, index.findWithin(latitude, longitude) >= 0);
+        }
+    }
+}
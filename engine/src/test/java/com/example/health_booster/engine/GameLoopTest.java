@@ -0,0 +1,223 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class GameLoopTest {
+
+    private static final double LATITUDE = 22.3;
+    private static final double LONGITUDE = 114.17;
+    private static final int PRODUCERS = 4;
+    private static final int FIXES_PER_PRODUCER = 20000;
+    private static final int SKIPS = 1000;
+
+    //Game thread only, read after the executor terminated
+    private int generated;
+    private int completed;
+    private int skipped;
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+        @Override
+        public void onTaskGenerated(GameTask task) {
+            generated++;
+        }
+
+        @Override
+        public void onTaskCompleted(GameTask task) {
+            completed++;
+        }
+
+        @Override
+        public void onTaskSkipped(GameTask task) {
+            skipped++;
+        }
+    };
+
+    //Every task is placed where the fixes are, so each fix after the first completes one
+    private static final TaskGenerator SAME_PLACE = new TaskGenerator() {
+        @Override
+        public boolean next(double latitude, double longitude, double[] out) {
+            out[0] = LATITUDE;
+            out[1] = LONGITUDE;
+            return true;
+        }
+
+        @Override
+        public void refill() {
+        }
+    };
+
+    @Test
+    public void fixesFromManyThreadsLoseNoCompletions() throws InterruptedException {
+        ExecutorService gameThread = Executors.newSingleThreadExecutor();
+        final GameLoop loop = new GameLoop(listener, SAME_PLACE, gameThread);
+        //Places the first task, queued before anything else so every later fix completes one
+        loop.submitFix(LATITUDE, LONGITUDE, 5, 0);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<String> readerError = new AtomicReference<>();
+        Thread[] producers = new Thread[PRODUCERS + 1];
+        for (int p = 0; p < PRODUCERS; p++) {
+            final long firstMillis = 1 + p * (long) FIXES_PER_PRODUCER;
+            producers[p] = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < FIXES_PER_PRODUCER; i++) {
+                    loop.submitFix(LATITUDE, LONGITUDE, 5, firstMillis + i);
+                }
+            });
+        }
+        //Skips race with the fixes, each replaces the task without completing it
+        producers[PRODUCERS] = new Thread(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < SKIPS; i++) {
+                loop.execute(() -> loop.getEngine().nextTask(true, 0));
+            }
+        });
+        //Snapshots read concurrently must never go back
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            int lastCompleted = 0;
+            while (!Thread.currentThread().isInterrupted())
+            {
+                GameSnapshot snapshot = loop.getSnapshot();
+                if (snapshot.getVersion() < lastVersion || snapshot.getCompletedCount() < lastCompleted)
+                {
+                    readerError.set("Snapshot went back from " + lastVersion + " to " + snapshot.getVersion());
+                    return;
+                }
+                if (snapshot.hasPosition() && snapshot.getTask() == null)
+                {
+                    readerError.set("Position without a task in snapshot " + snapshot.getVersion());
+                    return;
+                }
+                lastVersion = snapshot.getVersion();
+                lastCompleted = snapshot.getCompletedCount();
+            }
+        });
+        reader.start();
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        gameThread.shutdown();
+        assertTrue(gameThread.awaitTermination(30, TimeUnit.SECONDS));
+        reader.interrupt();
+        reader.join();
+
+        int fixes = PRODUCERS * FIXES_PER_PRODUCER;
+        assertNull(readerError.get(), readerError.get());
+        assertEquals(fixes, completed);
+        assertEquals(SKIPS, skipped);
+        assertEquals(1 + completed + SKIPS, generated);
+        GameSnapshot snapshot = loop.getSnapshot();
+        assertEquals(fixes, snapshot.getCompletedCount());
+        assertEquals(1 + fixes + SKIPS, snapshot.getVersion());
+    }
+
+    @Test
+    public void snapshotsShareTheWalkedPath() {
+        //Runs on the calling thread, each call publishes right away
+        GameLoop loop = new GameLoop(listener, new RandomTaskGenerator(3), Runnable::run);
+        double step = 10 / Geofence.METRES_PER_DEGREE_LATITUDE;
+        loop.submitFix(LATITUDE, LONGITUDE, 0, 0);
+        GameSnapshot first = loop.getSnapshot();
+        assertEquals(1, first.getTrace().size());
+
+        loop.submitFix(LATITUDE + step, LONGITUDE, 0, 1000);
+        GameSnapshot second = loop.getSnapshot();
+        assertTrue(second.getTrace().isAppendedTo(first.getTrace()));
+
+        //Walking straight on moves the last point instead of adding one
+        loop.submitFix(LATITUDE + 2 * step, LONGITUDE, 0, 2000);
+        GameSnapshot third = loop.getSnapshot();
+        assertTrue(third.getTrace().isReplacementOf(second.getTrace()));
+        assertEquals(2, third.getTrace().size());
+        assertEquals(LATITUDE + 2 * step, third.getTrace().getLatitude(), 1e-9);
+        //Published snapshots are left as they were
+        assertEquals(LATITUDE + step, second.getTrace().getLatitude(), 1e-9);
+
+        //A new task starts a new path
+        loop.execute(() -> loop.getEngine().nextTask(true, 3000));
+        GameSnapshot skipped = loop.getSnapshot();
+        assertNotSame(third.getTask(), skipped.getTask());
+        assertEquals(1, skipped.getTrace().size());
+        assertFalse(skipped.getTrace().isAppendedTo(third.getTrace()));
+        assertFalse(skipped.getTrace().isReplacementOf(third.getTrace()));
+    }
+
+    @Test
+    public void unreadSnapshotsAreNotRebuiltForEveryFix() {
+        GameLoop loop = new GameLoop(listener, new RandomTaskGenerator(7), Runnable::run);
+        double step = 10 / Geofence.METRES_PER_DEGREE_LATITUDE;
+        loop.onFix(LATITUDE, LONGITUDE, 0, 0);
+        //Far away, so walking completes nothing
+        loop.execute(() -> loop.getEngine().setTask(new GameTask(LATITUDE - 1, LONGITUDE, 0)));
+        GameSnapshot first = loop.getSnapshot();
+        loop.onFix(LATITUDE + step, LONGITUDE, 0, 1000);
+        GameSnapshot unread = loop.getSnapshot();
+        assertEquals(first.getVersion() + 1, unread.getVersion());
+
+        //Nobody reads, only the first fix after the read publishes
+        for (int i = 2; i < 40; i++) {
+            loop.onFix(LATITUDE + i * step, LONGITUDE + (i % 3) * step, 0, i * 1000L);
+        }
+        assertEquals(unread.getVersion() + 1, loop.getSnapshot().getVersion());
+        GameSnapshot stale = loop.getSnapshot();
+        for (int i = 40; i < 80; i++) {
+            loop.onFix(LATITUDE + i * step, LONGITUDE + (i % 3) * step, 0, i * 1000L);
+        }
+        assertEquals(stale.getVersion() + 1, loop.getSnapshot().getVersion());
+
+        //Catching up gives the same path as one built from the engine's trace
+        loop.onFix(LATITUDE + 81 * step, LONGITUDE, 0, 81000);
+        loop.refresh();
+        GameSnapshot refreshed = loop.getSnapshot();
+        TracePath expected = TracePath.of(loop.getEngine().getTrace());
+        assertEquals(expected.size(), refreshed.getTrace().size());
+        for (TracePath path = refreshed.getTrace(); path != null; path = path.getPrevious(), expected = expected.getPrevious()) {
+            assertEquals(expected.getLatitude(), path.getLatitude(), 0);
+            assertEquals(expected.getLongitude(), path.getLongitude(), 0);
+        }
+        //Nothing changed since, nothing to publish
+        loop.refresh();
+        assertEquals(refreshed.getVersion(), loop.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void reachedCheckpointsAreCopiedOnWrite() {
+        GameLoop loop = new GameLoop(listener, new RandomTaskGenerator(5), Runnable::run);
+        loop.submitFix(LATITUDE, LONGITUDE, 0, 0);
+        loop.execute(() -> loop.getEngine().startTrail(3, 0));
+        GameSnapshot trail = loop.getSnapshot();
+        assertEquals(3, trail.getCheckpointCount());
+        assertEquals(3, trail.getCheckpointsRemaining());
+
+        GameTask checkpoint = trail.getCheckpoint(1);
+        loop.submitFix(checkpoint.getLatitude(), checkpoint.getLongitude(), 0, 1000);
+        GameSnapshot reached = loop.getSnapshot();
+        assertTrue(reached.hasSameTrail(trail));
+        assertTrue(reached.isCheckpointReached(1));
+        assertFalse(trail.isCheckpointReached(1));
+        assertTrue(reached.getCheckpointsRemaining() < 3);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
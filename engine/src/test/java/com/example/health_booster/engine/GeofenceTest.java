@@ -0,0 +1,64 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GeofenceTest {
+
+    //Degrees of longitude for the given metres east at a latitude
+    private static double east(double latitude, double metres) {
+        return metres / (Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude)));
+    }
+
+    @Test
+    public void sameRadiusInHongKongAndOslo() {
+        for (double latitude : new double[]{22.3, 59.9}) {
+            Geofence geofence = new Geofence(50);
+            geofence.setCentre(latitude, 10);
+            assertTrue(geofence.contains(latitude, 10 + east(latitude, 45)));
+            assertFalse(geofence.contains(latitude, 10 + east(latitude, 55)));
+            assertTrue(geofence.contains(latitude - 45 / Geofence.METRES_PER_DEGREE_LATITUDE, 10));
+            assertFalse(geofence.contains(latitude - 55 / Geofence.METRES_PER_DEGREE_LATITUDE, 10));
+        }
+    }
+
+    @Test
+    public void isARadiusNotABox() {
+        Geofence geofence = new Geofence(50);
+        geofence.setCentre(22.3, 114.17);
+        //40 m north and 40 m east is 56.6 m away
+        assertFalse(geofence.contains(22.3 + 40 / Geofence.METRES_PER_DEGREE_LATITUDE, 114.17 + east(22.3, 40)));
+        assertTrue(geofence.contains(22.3 + 30 / Geofence.METRES_PER_DEGREE_LATITUDE, 114.17 + east(22.3, 30)));
+    }
+
+    @Test
+    public void acrossAntimeridian() {
+        Geofence geofence = new Geofence(50);
+        geofence.setCentre(0, 179.9998);
+        assertTrue(geofence.contains(0, -179.9998));
+        assertFalse(geofence.contains(0, -179.999));
+    }
+
+    @Test
+    public void haversineFallbackAgreesWithEquirectangular() {
+        Geofence small = new Geofence(50);
+        small.setCentre(84, 0);
+        Geofence polar = new Geofence(50);
+        polar.setCentre(86, 0);
+        assertTrue(small.contains(84, east(84, 49)));
+        assertTrue(polar.contains(86, east(86, 49)));
+        assertFalse(polar.contains(86, east(86, 51)));
+
+        Geofence large = new Geofence(20000);
+        large.setCentre(22.3, 114.17);
+        assertTrue(large.contains(22.3 + 19900 / Geofence.METRES_PER_DEGREE_LATITUDE, 114.17));
+        assertFalse(large.contains(22.3, 114.17 + east(22.3, 20100)));
+    }
+
+    @Test
+    public void haversineMetres() {
+        //Hong Kong to Oslo, about 8590 km
+        assertEquals(8590, Geofence.haversineMetres(22.3, 114.17, 59.91, 10.75) / 1000, 10);
+    }
+}
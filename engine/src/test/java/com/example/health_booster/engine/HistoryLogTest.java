@@ -0,0 +1,82 @@
+package com.example.health_booster.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class HistoryLogTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void appendAndRead() throws IOException {
+        File path = temporaryFolder.newFile();
+        try (HistoryLog historyLog = new HistoryLog(path)) {
+            historyLog.append(HistoryLog.TYPE_GENERATED, 1000, 0, 22.3, 114.1, 22.29, 114.09, 0);
+            historyLog.append(HistoryLog.TYPE_COMPLETED, 61000, 60000, 22.3, 114.1, 22.3001, 114.1001, 420.5);
+            assertEquals(2, historyLog.size());
+
+            HistoryLog.Record record = historyLog.read(historyLog.size() - 1, new HistoryLog.Record());
+            assertEquals(HistoryLog.TYPE_COMPLETED, record.type);
+            assertEquals(61000, record.timeMillis);
+            assertEquals(60000, record.elapsedMillis);
+            assertEquals(22.3, record.taskLatitude, 0);
+            assertEquals(114.1001, record.longitude, 0);
+            assertEquals(420.5, record.distanceMetres, 0);
+        }
+    }
+
+    @Test
+    public void reopensExistingLog() throws IOException {
+        File path = temporaryFolder.newFile();
+        try (HistoryLog historyLog = new HistoryLog(path)) {
+            historyLog.append(HistoryLog.TYPE_SKIPPED, 5, 4, 1, 2, 3, 4, 5);
+        }
+        try (HistoryLog historyLog = new HistoryLog(path)) {
+            assertEquals(1, historyLog.size());
+            assertEquals(HistoryLog.TYPE_SKIPPED, historyLog.read(0, new HistoryLog.Record()).type);
+        }
+    }
+
+    @Test
+    public void growsPastInitialMapping() throws IOException {
+        File path = temporaryFolder.newFile();
+        int records = HistoryLog.GROWTH_RECORDS * 2 + 1;
+        try (HistoryLog historyLog = new HistoryLog(path)) {
+            for (int i = 0; i < records; i++) {
+                historyLog.append(HistoryLog.TYPE_GENERATED, i, 0, 0, 0, 0, 0, 0);
+            }
+            HistoryLog.Record record = new HistoryLog.Record();
+            for (int back = 0; back < 10; back++) {
+                assertEquals(records - 1 - back, historyLog.read(records - 1 - back, record).timeMillis);
+            }
+        }
+        try (HistoryLog historyLog = new HistoryLog(path)) {
+            assertEquals(records, historyLog.size());
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readBeyondEnd() throws IOException {
+        try (HistoryLog historyLog = new HistoryLog(temporaryFolder.newFile())) {
+            historyLog.read(0, new HistoryLog.Record());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFile() throws IOException {
+        File path = temporaryFolder.newFile();
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.writeLong(42);
+            file.writeLong(42);
+        }
+        new HistoryLog(path);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.health_booster.engine;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+public class HttpLeaderboardBackendTest {
+
+    private HttpServer server;
+    private String base;
+    private volatile int status = 204;
+    private volatile String path;
+    private volatile byte[] body;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            path = exchange.getRequestURI().getRawPath();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody())
+            {
+                byte[] buffer = new byte[256];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    received.write(buffer, 0, read);
+                }
+            }
+            body = received.toByteArray();
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void postsTheBatchForTheDevice() throws IOException {
+        byte[] batch = {1, 2, 3, -1};
+        new HttpLeaderboardBackend(base).upload("device 1", batch);
+        assertEquals("/api/devices/device+1/scores", path);
+        assertArrayEquals(batch, body);
+    }
+
+    @Test(expected = IOException.class)
+    public void serverErrorIsRetried() throws IOException {
+        status = 503;
+        new HttpLeaderboardBackend(base).upload("device-1", new byte[] {1});
+    }
+
+    @Test(expected = IOException.class)
+    public void unreachableServerIsRetried() throws IOException {
+        String url = base;
+        server.stop(0);
+        new HttpLeaderboardBackend(url).upload("device-1", new byte[] {1});
+    }
+}
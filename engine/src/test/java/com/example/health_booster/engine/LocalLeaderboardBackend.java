@@ -0,0 +1,102 @@
+package com.example.health_booster.engine;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-process stand-in for the team leaderboard server. Keeps per-device totals in memory and
+ * counts every event once. It can be taken offline, or made to lose its replies after storing a
+ * batch, to exercise the retries.
+ */
+public class LocalLeaderboardBackend implements LeaderboardBackend {
+
+    private static class Device {
+        //Events below this history index were counted already
+        long nextSequence;
+        int completions;
+        int checkpoints;
+    }
+
+    private final Map<String, Device> devices = new HashMap<>();
+    private volatile boolean reachable = true;
+    private volatile boolean losingReplies;
+    private int uploadCount;
+    private long uploadedBytes;
+
+    @Override
+    public synchronized void upload(String deviceId, byte[] batch) throws IOException {
+        if (!reachable)
+        {
+            throw new IOException("Leaderboard unreachable");
+        }
+        uploadCount++;
+        uploadedBytes += batch.length;
+        Device device = devices.get(deviceId);
+        if (device == null)
+        {
+            device = new Device();
+            devices.put(deviceId, device);
+        }
+        final Device counted = device;
+        ScoreSync.readBatch(batch, (sequence, type, timeMillis, elapsedMillis, distanceMetres) -> {
+            if (sequence < counted.nextSequence)
+            {
+                return;
+            }
+            counted.nextSequence = sequence + 1;
+            if (type == HistoryLog.TYPE_COMPLETED)
+            {
+                counted.completions++;
+            }
+            else if (type == HistoryLog.TYPE_CHECKPOINT)
+            {
+                counted.checkpoints++;
+            }
+        });
+        if (losingReplies)
+        {
+            throw new IOException("Reply lost");
+        }
+    }
+
+    /**
+     * @return completed tasks and reached checkpoints of the device, a point each
+     */
+    public synchronized int getScore(String deviceId) {
+        Device device = devices.get(deviceId);
+        return device == null ? 0 : device.completions + device.checkpoints;
+    }
+
+    public synchronized int getCompletions(String deviceId) {
+        Device device = devices.get(deviceId);
+        return device == null ? 0 : device.completions;
+    }
+
+    /**
+     * @return the score of all devices together
+     */
+    public synchronized int getTeamScore() {
+        int score = 0;
+        for (Device device : devices.values()) {
+            score += device.completions + device.checkpoints;
+        }
+        return score;
+    }
+
+    public synchronized int getUploadCount() {
+        return uploadCount;
+    }
+
+    public synchronized long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    public void setReachable(boolean reachable) {
+        this.reachable = reachable;
+    }
+
+    public void setLosingReplies(boolean losingReplies) {
+        this.losingReplies = losingReplies;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays a recorded-like trace through the engine with and without the location filter: ten
+ * minutes standing 70 m from the task with GPS jitter, then walking through it.
+ */
+public class LocationFilterReplayTest {
+
+    private static final double LATITUDE = 22.3;
+    private static final double LONGITUDE = 114.17;
+    private static final int STANDING_SECONDS = 600;
+    private static final int WALKING_SECONDS = 120;
+    private static final double JITTER_METRES = 12;
+
+    private int completions;
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+        @Override
+        public void onTaskCompleted(GameTask task) {
+            completions++;
+        }
+    };
+
+    /**
+     * Replays the trace.
+     *
+     * @return redraws and completions while standing, then completions while walking
+     */
+    private int[] replay(boolean filtered) {
+        completions = 0;
+        Random noise = new Random(7);
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(7));
+        if (filtered)
+        {
+            engine.setLocationFilter(new LocationFilter());
+        }
+        engine.setPosition(LATITUDE, LONGITUDE, 0);
+        engine.setTask(new GameTask(LATITUDE + 70 / Geofence.METRES_PER_DEGREE_LATITUDE, LONGITUDE, 0));
+        double metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(LATITUDE));
+
+        int standingRedraws = 0;
+        for (int second = 0; second < STANDING_SECONDS; second++) {
+            double north = noise.nextGaussian() * JITTER_METRES;
+            double east = noise.nextGaussian() * JITTER_METRES;
+            if (engine.onFix(LATITUDE + north / Geofence.METRES_PER_DEGREE_LATITUDE, LONGITUDE + east / metresPerDegreeLongitude, 15, second * 1000L))
+            {
+                standingRedraws++;
+            }
+        }
+        int standingCompletions = completions;
+
+        //Put the task back in case a false completion moved it
+        engine.setTask(new GameTask(LATITUDE + 70 / Geofence.METRES_PER_DEGREE_LATITUDE, LONGITUDE, 0));
+        completions = 0;
+        for (int second = 0; second < WALKING_SECONDS; second++) {
+            double north = 1.4 * second + noise.nextGaussian() * JITTER_METRES;
+            double east = noise.nextGaussian() * JITTER_METRES;
+            engine.onFix(LATITUDE + north / Geofence.METRES_PER_DEGREE_LATITUDE, LONGITUDE + east / metresPerDegreeLongitude, 15,
+                    (STANDING_SECONDS + second) * 1000L);
+            if (completions > 0)
+            {
+                break;
+            }
+        }
+        return new int[]{standingRedraws, standingCompletions, completions};
+    }
+
+    @Test
+    public void filterCutsRedrawsAndFalseCompletions() {
+        int[] raw = replay(false);
+        int[] filtered = replay(true);
+
+        //Every raw fix is drawn and jitter alone reaches the task
+        assertEquals(STANDING_SECONDS, raw[0]);
+        assertTrue(raw[1] > 0);
+
+        assertTrue("Filtered redraws " + filtered[0], filtered[0] < STANDING_SECONDS / 4);
+        assertEquals(0, filtered[1]);
+        //Really walking there still completes the task
+        assertEquals(1, filtered[2]);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LocationSchedulerTest {
+
+    @Test
+    public void relaxesWhenTaskIsFar() {
+        LocationScheduler scheduler = new LocationScheduler();
+        assertTrue(scheduler.update(600, 0, 0));
+        assertEquals(LocationScheduler.Policy.FAR, scheduler.getPolicy());
+        assertFalse(scheduler.update(550, 0, 1000));
+    }
+
+    @Test
+    public void tightensNearTheTask() {
+        LocationScheduler scheduler = new LocationScheduler();
+        scheduler.update(600, 0, 0);
+        assertTrue(scheduler.update(200, 0, 1000));
+        assertEquals(LocationScheduler.Policy.APPROACHING, scheduler.getPolicy());
+        assertTrue(scheduler.update(50, 0, 2000));
+        assertEquals(LocationScheduler.Policy.NEAR, scheduler.getPolicy());
+        assertEquals(3, scheduler.getSwitchCount());
+    }
+
+    @Test
+    public void speedTightensEarlier() {
+        LocationScheduler scheduler = new LocationScheduler();
+        scheduler.update(350, 0, 0);
+        assertEquals(LocationScheduler.Policy.FAR, scheduler.getPolicy());
+        //Cycling at 6 m/s covers 180 m within the look-ahead
+        scheduler.update(350, 6, 1000);
+        assertEquals(LocationScheduler.Policy.APPROACHING, scheduler.getPolicy());
+    }
+
+    @Test
+    public void hysteresisPreventsFlapping() {
+        LocationScheduler scheduler = new LocationScheduler();
+        scheduler.update(90, 0, 0);
+        assertEquals(LocationScheduler.Policy.NEAR, scheduler.getPolicy());
+        assertFalse(scheduler.update(105, 0, 1000));
+        assertEquals(LocationScheduler.Policy.NEAR, scheduler.getPolicy());
+        assertTrue(scheduler.update(125, 0, 2000));
+        assertEquals(LocationScheduler.Policy.APPROACHING, scheduler.getPolicy());
+    }
+
+    @Test
+    public void accountsTimePerPolicy() {
+        LocationScheduler scheduler = new LocationScheduler();
+        scheduler.update(50, 0, 0);
+        scheduler.update(50, 0, 4000);
+        scheduler.update(600, 0, 5000);
+        scheduler.update(600, 0, 9000);
+        assertEquals(5000, scheduler.getMillisInPolicy(LocationScheduler.Policy.NEAR));
+        assertEquals(4000, scheduler.getMillisInPolicy(LocationScheduler.Policy.FAR));
+    }
+
+    @Test
+    public void batchedDeliveryKeepsDistancePolicy() {
+        LocationScheduler scheduler = new LocationScheduler();
+        scheduler.update(600, 0, 0);
+        assertEquals(0, scheduler.getMaxWaitMillis());
+        assertTrue(scheduler.setBatched(true, 1000));
+        //Far from the task the relaxed request stays, its fixes are only held back
+        assertEquals(LocationScheduler.Policy.FAR, scheduler.getPolicy());
+        assertEquals(LocationScheduler.BATCH_WAIT_MILLIS, scheduler.getMaxWaitMillis());
+        //Getting closer while batched tightens the request as before
+        assertTrue(scheduler.update(50, 0, 61000));
+        assertEquals(LocationScheduler.Policy.NEAR, scheduler.getPolicy());
+        assertTrue(scheduler.setBatched(false, 62000));
+        assertEquals(0, scheduler.getMaxWaitMillis());
+        assertEquals(61000, scheduler.getMillisInPolicy(LocationScheduler.Policy.FAR));
+        assertEquals(61000, scheduler.getMillisBatched());
+    }
+
+    @Test
+    public void batchedNeverCostsMoreThanUnbatched() {
+        LocationScheduler batched = new LocationScheduler();
+        LocationScheduler unbatched = new LocationScheduler();
+        batched.setBatched(true, 0);
+        Random random = new Random(5);
+        double distance = 1000;
+        for (int i = 1; i <= 2000; i++) {
+            distance = Math.max(0, distance + random.nextGaussian() * 40);
+            float speed = random.nextFloat() * 3;
+            batched.update(distance, speed, i * 1000L);
+            unbatched.update(distance, speed, i * 1000L);
+            LocationScheduler.Policy cheap = batched.getPolicy();
+            LocationScheduler.Policy full = unbatched.getPolicy();
+            assertTrue(cheap.getIntervalMillis() >= full.getIntervalMillis());
+            assertTrue(cheap.getFastestIntervalMillis() >= full.getFastestIntervalMillis());
+            assertTrue(cheap.getAccuracy().ordinal() >= full.getAccuracy().ordinal());
+            assertTrue(cheap.getMinDisplacementMetres() >= full.getMinDisplacementMetres());
+            assertTrue(batched.getMaxWaitMillis() > 0);
+        }
+    }
+}
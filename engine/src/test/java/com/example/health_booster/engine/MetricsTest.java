@@ -0,0 +1,60 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test
+    public void histogramReportsBucketBounds() {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram histogram = metrics.histogram("latency", new long[]{10, 20, 50});
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i <= 90 ? 5 : 40);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(10, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(90));
+        assertEquals(50, histogram.getPercentile(99));
+        assertEquals(40, histogram.getMax());
+    }
+
+    @Test
+    public void overflowBucketReportsMax() {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram histogram = metrics.histogram("latency", Metrics.exponentialBounds(1, 2, 4));
+        histogram.record(1000);
+        assertEquals(1000, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void meterCountsLastFullMinute() {
+        Metrics metrics = new Metrics();
+        Metrics.Meter meter = metrics.meter("writes");
+        meter.mark(0);
+        meter.mark(59999, 2);
+        meter.mark(60000);
+        assertEquals(3, meter.getLastMinute(60000));
+        assertEquals(1, meter.getLastMinute(120000));
+        //Minutes beyond the ring are not reported from stale slots
+        assertEquals(0, meter.getLastMinute(60000 * (Metrics.Meter.MINUTES + 1)));
+        assertEquals(4, meter.getTotal());
+    }
+
+    @Test
+    public void dumpListsEveryMetric() throws IOException {
+        Metrics metrics = new Metrics();
+        metrics.counter("score.updates").increment();
+        metrics.meter("disk.writes").mark(0);
+        metrics.histogram("fix.age.ms", Metrics.exponentialBounds(10, 2, 8)).record(15);
+        StringBuilder out = new StringBuilder();
+        metrics.dump(out, 60000);
+        assertEquals("score.updates count=1\n"
+                + "disk.writes total=1 lastMinute=1\n"
+                + "fix.age.ms count=1 mean=15 p50=20 p90=20 p99=20 max=15\n", out.toString());
+    }
+}
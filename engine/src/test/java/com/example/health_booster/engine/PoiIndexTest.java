@@ -0,0 +1,82 @@
+package com.example.health_booster.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PoiIndexTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final int POINTS = 5000;
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+
+    //A small stand-in dataset, points scattered over about 10 x 10 km of Hong Kong
+    private File writeDataset() throws IOException {
+        Random random = new Random(3);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = 22.25 + random.nextDouble() * 0.09;
+            longitudes[i] = 114.12 + random.nextDouble() * 0.1;
+        }
+        File path = temporaryFolder.newFile();
+        PoiIndex.write(path, latitudes, longitudes, POINTS, PoiIndex.DEFAULT_CELL_DEGREES);
+        return path;
+    }
+
+    @Test
+    public void queryMatchesBruteForce() throws IOException {
+        try (PoiIndex poiIndex = new PoiIndex(writeDataset())) {
+            assertEquals(POINTS, poiIndex.size());
+            final Set<String> found = new HashSet<>();
+            poiIndex.query(22.3, 114.17, 100, 500, (latitude, longitude) -> found.add(latitude + "," + longitude));
+
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < POINTS; i++) {
+                double latitude = Math.round(latitudes[i] * 1e6) / 1e6;
+                double longitude = Math.round(longitudes[i] * 1e6) / 1e6;
+                double distance = Geo.distanceMetres(22.3, 114.17, latitude, longitude);
+                if (distance >= 100 && distance <= 500)
+                {
+                    expected.add(latitude + "," + longitude);
+                }
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void generatorPicksPointsInRingOrFallsBack() throws IOException {
+        try (PoiIndex poiIndex = new PoiIndex(writeDataset())) {
+            PoiTaskGenerator generator = new PoiTaskGenerator(poiIndex, 5, new RandomTaskGenerator(5));
+            double[] task = new double[2];
+            assertTrue(generator.next(22.3, 114.17, task));
+            double distance = Geo.distanceMetres(22.3, 114.17, task[0], task[1]);
+            assertTrue(distance >= 100 && distance <= 500);
+            boolean isPoint = false;
+            for (int i = 0; i < POINTS; i++) {
+                isPoint |= Math.abs(latitudes[i] - task[0]) < 1e-6 && Math.abs(longitudes[i] - task[1]) < 1e-6;
+            }
+            assertTrue(isPoint);
+
+            //Oslo is not in the dataset, tasks come from the fallback ring
+            assertTrue(generator.next(59.9, 10.75, task));
+            assertEquals(59.9, task[0], 0.01);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFile() throws IOException {
+        new PoiIndex(temporaryFolder.newFile());
+    }
+}
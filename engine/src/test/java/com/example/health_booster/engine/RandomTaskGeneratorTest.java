@@ -0,0 +1,69 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class RandomTaskGeneratorTest {
+
+    @Test
+    public void sameSeedSameTasks() {
+        RandomTaskGenerator first = new RandomTaskGenerator(1234);
+        RandomTaskGenerator second = new RandomTaskGenerator(1234);
+        double[] a = new double[2];
+        double[] b = new double[2];
+        for (int i = 0; i < 100; i++) {
+            first.next(22.3, 114.17, a);
+            //Refilling at other times must not change the sequence
+            if (i % 3 == 0)
+            {
+                first.refill();
+            }
+            second.next(22.3, 114.17, b);
+            assertArrayEquals(a, b, 0);
+        }
+        assertEquals(1234, first.getSeed());
+        assertEquals(100, first.getDrawCount());
+    }
+
+    @Test
+    public void uniformOverRing() {
+        RandomTaskGenerator generator = new RandomTaskGenerator(99, 100, 500);
+        double[] task = new double[2];
+        int inner = 0;
+        int samples = 20000;
+        int[] quadrants = new int[4];
+        for (int i = 0; i < samples; i++) {
+            generator.next(59.9, 10.75, task);
+            double distance = Geo.distanceMetres(59.9, 10.75, task[0], task[1]);
+            assertTrue(distance >= 99.9 && distance <= 500.1);
+            //Half of the ring's area lies within sqrt((100^2 + 500^2) / 2) = 360.6 m
+            if (distance < 360.6)
+            {
+                inner++;
+            }
+            quadrants[(task[0] > 59.9 ? 0 : 2) + (task[1] > 10.75 ? 0 : 1)]++;
+        }
+        assertEquals(0.5, (double) inner / samples, 0.02);
+        for (int quadrant : quadrants) {
+            assertEquals(0.25, (double) quadrant / samples, 0.02);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRing() {
+        new RandomTaskGenerator(1, 500, 100);
+    }
+
+    @Test
+    public void splitMix64MatchesReference() {
+        //Same sequence as the JDK's SplittableRandom on the JVM
+        SplitMix64 random = new SplitMix64(42);
+        SplittableRandom reference = new SplittableRandom(42);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(reference.nextLong(), random.nextLong());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.health_booster.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ScoreSyncTest {
+
+    private static final String DEVICE = "device-1";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HistoryLog historyLog;
+    private final LocalLeaderboardBackend backend = new LocalLeaderboardBackend();
+
+    @Before
+    public void openLog() throws IOException {
+        historyLog = new HistoryLog(temporaryFolder.newFile());
+    }
+
+    @After
+    public void closeLog() throws IOException {
+        historyLog.close();
+    }
+
+    private void append(int type, long timeMillis) throws IOException {
+        historyLog.append(type, timeMillis, 60000, 22.3, 114.1, 22.3, 114.1, 500);
+    }
+
+    /**
+     * Uploads batches until nothing is due, as the service does.
+     *
+     * @return the number of batches sent, including failed ones
+     */
+    private int sync(ScoreSync sync, long nowMillis) throws IOException {
+        int batches = 0;
+        ScoreSync.Batch batch;
+        while ((batch = sync.nextBatch(nowMillis)) != null)
+        {
+            batches++;
+            try
+            {
+                backend.upload(DEVICE, batch.getData());
+                sync.onUploaded(batch);
+            }
+            catch (IOException e)
+            {
+                sync.onFailed(batch, nowMillis);
+            }
+        }
+        return batches;
+    }
+
+    @Test
+    public void uploadsScoringEventsOnly() throws IOException {
+        append(HistoryLog.TYPE_GENERATED, 0);
+        append(HistoryLog.TYPE_COMPLETED, 1000);
+        append(HistoryLog.TYPE_SKIPPED, 2000);
+        append(HistoryLog.TYPE_CHECKPOINT, 3000);
+        append(HistoryLog.TYPE_GENERATED, 4000);
+        ScoreSync sync = new ScoreSync(historyLog, 0, 1);
+
+        assertEquals(1, sync(sync, 0));
+        assertEquals(2, backend.getScore(DEVICE));
+        assertEquals(1, backend.getCompletions(DEVICE));
+        assertEquals(5, sync.getUploadedCount());
+        assertEquals(0, sync.getPendingCount());
+        //Nothing new, nothing sent
+        assertEquals(0, sync(sync, 0));
+        assertEquals(1, backend.getUploadCount());
+    }
+
+    @Test
+    public void daysOfflineAreSentInBoundedBatches() throws IOException {
+        int completions = ScoreSync.MAX_BATCH_EVENTS * 10 + 7;
+        for (int i = 0; i < completions; i++) {
+            append(HistoryLog.TYPE_GENERATED, i * 60000L);
+            append(HistoryLog.TYPE_COMPLETED, i * 60000L + 30000);
+        }
+        ScoreSync sync = new ScoreSync(historyLog, 0, 1);
+        ScoreSync.Batch batch = sync.nextBatch(0);
+        assertEquals(ScoreSync.MAX_BATCH_EVENTS, batch.getEventCount());
+        //Similar records compress well below their raw size of 29 bytes
+        assertTrue(batch.getData().length < ScoreSync.MAX_BATCH_EVENTS * 29 / 2);
+        backend.upload(DEVICE, batch.getData());
+        sync.onUploaded(batch);
+
+        assertEquals(11, 1 + sync(sync, 0));
+        assertEquals(completions, backend.getScore(DEVICE));
+    }
+
+    @Test
+    public void failuresBackOffExponentially() throws IOException {
+        append(HistoryLog.TYPE_COMPLETED, 0);
+        ScoreSync sync = new ScoreSync(historyLog, 0, 1);
+        backend.setReachable(false);
+        long now = 0;
+        long previousBackoff = 0;
+        for (int failure = 1; failure <= 12; failure++) {
+            assertEquals(1, sync(sync, now));
+            assertEquals(failure, sync.getFailureCount());
+            long backoff = sync.getNextAttemptMillis() - now;
+            long limit = Math.min(ScoreSync.MAX_BACKOFF_MILLIS, ScoreSync.MIN_BACKOFF_MILLIS << (failure - 1));
+            assertTrue(backoff >= limit / 2 && backoff <= limit);
+            assertTrue(backoff > previousBackoff || limit == ScoreSync.MAX_BACKOFF_MILLIS);
+            //Not retried before the backoff passed
+            assertNull(sync.nextBatch(sync.getNextAttemptMillis() - 1));
+            previousBackoff = backoff;
+            now = sync.getNextAttemptMillis();
+        }
+        assertEquals(0, backend.getScore(DEVICE));
+
+        //Back online, the retry does not wait for the backoff
+        backend.setReachable(true);
+        sync.onConnected(now + 1000);
+        assertEquals(1, sync(sync, now + 1000));
+        assertEquals(1, backend.getScore(DEVICE));
+        assertEquals(0, sync.getFailureCount());
+    }
+
+    @Test
+    public void lostReplyIsCountedOnce() throws IOException {
+        append(HistoryLog.TYPE_COMPLETED, 0);
+        append(HistoryLog.TYPE_COMPLETED, 1000);
+        ScoreSync sync = new ScoreSync(historyLog, 0, 1);
+        backend.setLosingReplies(true);
+        sync(sync, 0);
+        assertEquals(0, sync.getUploadedCount());
+
+        backend.setLosingReplies(false);
+        append(HistoryLog.TYPE_CHECKPOINT, 2000);
+        sync(sync, sync.getNextAttemptMillis());
+        assertEquals(3, backend.getScore(DEVICE));
+        assertEquals(3, sync.getUploadedCount());
+    }
+
+    @Test
+    public void resumesFromPersistedCursor() throws IOException {
+        append(HistoryLog.TYPE_COMPLETED, 0);
+        ScoreSync sync = new ScoreSync(historyLog, 0, 1);
+        sync(sync, 0);
+        append(HistoryLog.TYPE_COMPLETED, 1000);
+
+        //A new process starts from the cursor the last one persisted
+        ScoreSync restarted = new ScoreSync(historyLog, sync.getUploadedCount(), 2);
+        ScoreSync.Batch batch = restarted.nextBatch(0);
+        assertEquals(1, batch.getFirstIndex());
+        assertEquals(1, batch.getEventCount());
+        final long[] sequence = new long[1];
+        assertEquals(1, ScoreSync.readBatch(batch.getData(), (s, type, timeMillis, elapsedMillis, distanceMetres) -> {
+            sequence[0] = s;
+            assertEquals(HistoryLog.TYPE_COMPLETED, type);
+            assertEquals(1000, timeMillis);
+            assertEquals(500, distanceMetres, 0);
+        }));
+        assertEquals(1, sequence[0]);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.health_booster.engine;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a full day of 1 s fixes through the game as the tracking service does: filter, game
+ * loop, fix age histogram and location scheduler. A third of the day is spent walking from task
+ * to task, the rest standing with GPS jitter, and the game is on screen for the first hour, where
+ * every fix publishes a snapshot that is read. Fails if the allocation per fix grows past
+ * {@link #MAX_BYTES_PER_FIX}, which a per-fix object on the path would do, or if the game
+ * retains more than {@link #MAX_RETAINED_BYTES} at the end of the day, and reports GC counts.
+ */
+public class SoakTest {
+
+    private static final int FIXES_PER_DAY = 86400;
+    private static final double WALKING_METRES_PER_SECOND = 1.4;
+    private static final double JITTER_METRES = 8;
+    private static final int DISPLAYED_FIXES = 3600;
+    //Snapshots and path nodes on screen, tasks on completion, spread over a day that is a few bytes per fix
+    static final long MAX_BYTES_PER_FIX = Long.getLong("soak.maxBytesPerFix", 8);
+    //Trace buffer, up to twice its points as path nodes, generator and filter state, a few hundred KB at most
+    static final long MAX_RETAINED_BYTES = 1 << 20;
+    private static final int MAX_GCS_TO_SETTLE = 20;
+
+    private int completions;
+    //Keeps the game reachable while the heap is measured with it
+    private GameLoop retained;
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+        @Override
+        public void onTaskCompleted(GameTask task) {
+            completions++;
+        }
+    };
+
+    /**
+     * Plays one day in a fresh game loop, on the calling thread.
+     *
+     * @return the game loop at the end of the day
+     */
+    private GameLoop playDay(long seed) {
+        Random random = new Random(seed);
+        GameLoop loop = new GameLoop(listener, new RandomTaskGenerator(seed), Runnable::run);
+        TaskEngine engine = loop.getEngine();
+        engine.setLocationFilter(new LocationFilter());
+        LocationScheduler scheduler = new LocationScheduler();
+        Metrics.Histogram fixAge = new Metrics().histogram("fix.age.ms", Metrics.exponentialBounds(10, 2, 16));
+        double latitude = 22.3;
+        double longitude = 114.17;
+        double metresPerDegreeLongitude = Geofence.METRES_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+        for (int second = 0; second < FIXES_PER_DAY; second++) {
+            GameTask task = engine.getTask();
+            //Walk for 20 minutes, then stand for 40
+            boolean walking = second % 3600 < 1200;
+            if (walking && task != null)
+            {
+                double north = (task.getLatitude() - latitude) * Geofence.METRES_PER_DEGREE_LATITUDE;
+                double east = (task.getLongitude() - longitude) * metresPerDegreeLongitude;
+                double distance = Math.max(1, Math.sqrt(north * north + east * east));
+                latitude += WALKING_METRES_PER_SECOND * north / distance / Geofence.METRES_PER_DEGREE_LATITUDE;
+                longitude += WALKING_METRES_PER_SECOND * east / distance / metresPerDegreeLongitude;
+            }
+            long timeMillis = second * 1000L;
+            fixAge.record(random.nextInt(2000));
+            if (loop.onFix(latitude + random.nextGaussian() * JITTER_METRES / Geofence.METRES_PER_DEGREE_LATITUDE,
+                    longitude + random.nextGaussian() * JITTER_METRES / metresPerDegreeLongitude,
+                    5 + random.nextFloat() * 10, timeMillis) && engine.getTask() != null)
+            {
+                scheduler.update(engine.distanceToTaskMetres(), walking ? (float) WALKING_METRES_PER_SECOND : 0, timeMillis);
+            }
+            //The display reads every snapshot while on screen, nothing does afterwards
+            if (second < DISPLAYED_FIXES)
+            {
+                loop.getSnapshot();
+            }
+        }
+        return loop;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Heap in use right after a collection, summed over the heap pools, -1 if the JVM does not say.
+     */
+    private static long heapAfterGc() {
+        long used = 0;
+        boolean measured = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null)
+            {
+                used += usage.getUsed();
+                measured = true;
+            }
+        }
+        return measured ? used : -1;
+    }
+
+    /**
+     * Collects until two collections in a row leave the same heap, so finalizers and soft
+     * references the first ones released are gone too.
+     *
+     * @return the settled heap after collection, -1 if it cannot be measured
+     */
+    private static long settledHeapAfterGc() {
+        long previous = -1;
+        for (int i = 0; i < MAX_GCS_TO_SETTLE; i++) {
+            System.gc();
+            long used = heapAfterGc();
+            if (used < 0 || used == previous)
+            {
+                return used;
+            }
+            previous = used;
+        }
+        return previous;
+    }
+
+    @Test
+    public void dayOfFixesStaysWithinAllocationBudget() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Per-thread allocation not measurable on this JVM",
+                threads instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        allocation.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        //The first day warms up the JIT, escape analysis removes temporaries only once compiled
+        playDay(1);
+        completions = 0;
+        long gcBefore = gcCount();
+        long allocatedBefore = allocation.getThreadAllocatedBytes(threadId);
+
+        retained = playDay(2);
+
+        long allocatedBytes = allocation.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long collections = gcCount() - gcBefore;
+        //The same heap with the game reachable and without it, the difference is what it holds on to
+        long withGame = settledHeapAfterGc();
+        boolean hasPosition = retained.getEngine().hasPosition();
+        retained = null;
+        long withoutGame = settledHeapAfterGc();
+        long retainedBytes = withGame - withoutGame;
+        double bytesPerFix = (double) allocatedBytes / FIXES_PER_DAY;
+        System.out.printf("soak fixes=%d completions=%d allocated=%d bytesPerFix=%.2f gcs=%d retained=%d%n",
+                FIXES_PER_DAY, completions, allocatedBytes, bytesPerFix, collections, retainedBytes);
+
+        assertTrue("Too few completions for a day of walking: " + completions, completions > 10);
+        assertTrue(hasPosition);
+        assertTrue(String.format("%.2f bytes allocated per fix, budget %d", bytesPerFix, MAX_BYTES_PER_FIX),
+                bytesPerFix <= MAX_BYTES_PER_FIX);
+        Assume.assumeTrue("Heap after collection not measurable on this JVM", withGame >= 0 && withoutGame >= 0);
+        assertTrue("Retained heap did not settle: " + retainedBytes, retainedBytes >= 0);
+        assertTrue(retainedBytes + " bytes retained by the game, budget " + MAX_RETAINED_BYTES,
+                retainedBytes <= MAX_RETAINED_BYTES);
+    }
+}
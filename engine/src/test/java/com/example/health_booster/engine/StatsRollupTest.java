@@ -0,0 +1,157 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StatsRollupTest {
+
+    private static final int DAY = (int) FixTrace.daysFromCivil(2024, 2, 28);
+
+    private final StatsRollup rollup = new StatsRollup();
+    private final StatsRollup.Totals totals = new StatsRollup.Totals();
+
+    @Test
+    public void calendar() {
+        assertEquals(0, StatsRollup.dayOf(0, 0));
+        assertEquals(-1, StatsRollup.dayOf(-1, 0));
+        assertEquals(-1, StatsRollup.dayOf(-StatsRollup.MILLIS_PER_DAY, 0));
+        //23:30 UTC is the next day in Hong Kong
+        assertEquals(1, StatsRollup.dayOf(StatsRollup.MILLIS_PER_DAY - 1800000, 8 * 3600000));
+
+        //2024-02-28 was a Wednesday
+        assertEquals(FixTrace.daysFromCivil(2024, 2, 26), StatsRollup.weekStart(DAY));
+        assertEquals(FixTrace.daysFromCivil(2024, 2, 26), StatsRollup.weekStart(DAY - 2));
+        assertEquals(FixTrace.daysFromCivil(2024, 2, 19), StatsRollup.weekStart(DAY - 3));
+        assertEquals(FixTrace.daysFromCivil(1969, 12, 29), StatsRollup.weekStart(0));
+
+        assertEquals(FixTrace.daysFromCivil(2024, 2, 1), StatsRollup.monthStart(DAY + 1));
+        assertEquals(FixTrace.daysFromCivil(2024, 3, 1), StatsRollup.monthStart(DAY + 2));
+        assertEquals(FixTrace.daysFromCivil(2000, 2, 1), StatsRollup.monthStart((int) FixTrace.daysFromCivil(2000, 2, 29)));
+        assertEquals(FixTrace.daysFromCivil(1969, 12, 1), StatsRollup.monthStart(-1));
+        assertEquals(FixTrace.daysFromCivil(2023, 12, 1), StatsRollup.monthStart((int) FixTrace.daysFromCivil(2023, 12, 31)));
+    }
+
+    @Test
+    public void rollsDaysIntoWeeksAndMonths() {
+        rollup.onCompleted(DAY, 60000, 400);
+        rollup.onCompleted(DAY, 120000, 600);
+        rollup.onSkipped(DAY, 50);
+        rollup.onCompleted(DAY + 2, 30000, 300);
+        rollup.onSkipped(DAY + 4, 10);
+
+        rollup.queryDay(DAY, totals);
+        assertEquals(2, totals.completed);
+        assertEquals(1, totals.skipped);
+        assertEquals(1050, totals.distanceMetres, 1e-9);
+        assertEquals(90000, totals.getAverageCompleteMillis());
+        assertEquals(0, rollup.queryDay(DAY + 1, totals).completed);
+        assertEquals(-1, totals.getAverageCompleteMillis());
+
+        //Monday 26th to Sunday 3rd
+        rollup.queryWeek(DAY, totals);
+        assertEquals(3, totals.completed);
+        assertEquals(2, totals.skipped);
+        //February, then March from the 1st
+        assertEquals(2, rollup.queryMonth(DAY, totals).completed);
+        rollup.queryMonth(DAY + 2, totals);
+        assertEquals(1, totals.completed);
+        assertEquals(1, totals.skipped);
+        assertEquals(310, totals.distanceMetres, 1e-9);
+    }
+
+    @Test
+    public void keepsTheLastYear() {
+        for (int i = 0; i < 500; i++) {
+            rollup.onCompleted(DAY + i, 1000, 100);
+        }
+        int today = DAY + 499;
+        rollup.queryLastDays(today, 365, totals);
+        assertEquals(365, totals.completed);
+        assertEquals(36500, totals.distanceMetres, 1e-6);
+        //Longer ranges are cut to the last 365 days, older days are gone
+        assertEquals(365, rollup.queryLastDays(today, 1000, totals).completed);
+        assertEquals(0, rollup.queryDay(today - 365, totals).completed);
+        assertEquals(1, rollup.queryDay(today - 364, totals).completed);
+
+        //A gap of more than a year leaves nothing but the new day
+        rollup.onSkipped(today + 800, 5);
+        rollup.queryLastDays(today + 800, 365, totals);
+        assertEquals(0, totals.completed);
+        assertEquals(1, totals.skipped);
+    }
+
+    @Test
+    public void clockSetBackUpdatesLaterDays() {
+        rollup.onCompleted(DAY + 10, 1000, 100);
+        rollup.onCompleted(DAY + 3, 1000, 100);
+        rollup.onCompleted(DAY - 2, 1000, 100);
+        assertEquals(1, rollup.queryDay(DAY + 3, totals).completed);
+        assertEquals(1, rollup.queryDay(DAY - 2, totals).completed);
+        assertEquals(3, rollup.query(DAY - 2, DAY + 10, totals).completed);
+        assertEquals(2, rollup.query(DAY + 3, DAY + 20, totals).completed);
+        //Before the first day recorded
+        assertEquals(0, rollup.query(DAY - 30, DAY - 3, totals).completed);
+    }
+
+    @Test
+    public void matchesRecountingEveryDay() {
+        Random random = new Random(11);
+        int days = 900;
+        int[] completedPerDay = new int[days];
+        int[] skippedPerDay = new int[days];
+        int day = 0;
+        for (int event = 0; event < 5000; event++) {
+            day = Math.min(days - 1, day + (random.nextInt(10) == 0 ? random.nextInt(20) : 0));
+            if (random.nextBoolean())
+            {
+                rollup.onCompleted(DAY + day, 1000, 10);
+                completedPerDay[day]++;
+            }
+            else
+            {
+                rollup.onSkipped(DAY + day, 10);
+                skippedPerDay[day]++;
+            }
+            int from = Math.max(0, day - random.nextInt(StatsRollup.MAX_RANGE_DAYS));
+            int to = from + random.nextInt(day - from + 1);
+            int expectedCompleted = 0;
+            int expectedSkipped = 0;
+            for (int d = from; d <= to; d++) {
+                expectedCompleted += completedPerDay[d];
+                expectedSkipped += skippedPerDay[d];
+            }
+            rollup.query(DAY + from, DAY + to, totals);
+            assertEquals(expectedCompleted, totals.completed);
+            assertEquals(expectedSkipped, totals.skipped);
+        }
+    }
+
+    @Test
+    public void persistsAndRestores() throws IOException {
+        rollup.onCompleted(DAY, 60000, 400);
+        rollup.onSkipped(DAY + 1, 50);
+        assertTrue(rollup.isDirty());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rollup.writeTo(new DataOutputStream(bytes));
+        assertFalse(rollup.isDirty());
+
+        StatsRollup restored = new StatsRollup();
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(DAY + 1, restored.getLastDay());
+        restored.queryWeek(DAY, totals);
+        assertEquals(1, totals.completed);
+        assertEquals(1, totals.skipped);
+        assertEquals(450, totals.distanceMetres, 1e-9);
+        //Recording goes on where it was
+        restored.onCompleted(DAY + 1, 0, 0);
+        assertEquals(1, restored.queryDay(DAY + 1, totals).completed);
+    }
+}
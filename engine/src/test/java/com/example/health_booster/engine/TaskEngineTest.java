@@ -0,0 +1,136 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaskEngineTest {
+
+    private final List<String> events = new ArrayList<>();
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+        @Override
+        public void onTaskGenerated(GameTask task) {
+            events.add("generated");
+        }
+
+        @Override
+        public void onTaskCompleted(GameTask task) {
+            events.add("completed");
+        }
+
+        @Override
+        public void onTaskSkipped(GameTask task) {
+            events.add("skipped");
+        }
+
+        @Override
+        public void onCheckpointReached(int index, GameTask checkpoint) {
+            events.add("checkpoint " + index);
+        }
+    };
+
+    @Test
+    public void firstFixGeneratesTaskNearby() {
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        engine.onFix(22.3, 114.17, 1000);
+        assertEquals(1, events.size());
+        GameTask task = engine.getTask();
+        assertEquals(1000, task.getCreatedAtMillis());
+        double distance = Geo.distanceMetres(22.3, 114.17, task.getLatitude(), task.getLongitude());
+        assertTrue(distance >= RandomTaskGenerator.DEFAULT_MIN_METRES - 0.1);
+        assertTrue(distance <= RandomTaskGenerator.DEFAULT_MAX_METRES + 0.1);
+    }
+
+    @Test
+    public void reachingTaskCompletesIt() {
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        engine.setPosition(22.3, 114.17, 0);
+        engine.setTask(new GameTask(22.301, 114.17, 0));
+        engine.onFix(22.3004, 114.17, 1000);
+        assertTrue(events.isEmpty());
+        assertEquals(44.5, engine.getWalkedMetres(), 0.1);
+        engine.onFix(22.3007, 114.17, 2000);
+        assertEquals(2, events.size());
+        assertEquals("completed", events.get(0));
+        assertEquals("generated", events.get(1));
+        assertEquals(1, engine.getCompletedCount());
+        assertEquals(0, engine.getWalkedMetres(), 0);
+    }
+
+    @Test
+    public void completedTaskIsNotCompletedAgainWhenNoNextTaskIsPlaced() {
+        TaskEngine engine = new TaskEngine(listener, new TaskGenerator() {
+            @Override
+            public boolean next(double latitude, double longitude, double[] out) {
+                return false;
+            }
+
+            @Override
+            public void refill() {
+            }
+        });
+        engine.setPosition(22.3, 114.17, 0);
+        engine.setTask(new GameTask(22.3007, 114.17, 0));
+        engine.onFix(22.3007, 114.17, 1000);
+        engine.onFix(22.3007, 114.17, 2000);
+        engine.onFix(22.3006, 114.17, 3000);
+        assertEquals(1, events.size());
+        assertEquals("completed", events.get(0));
+        assertEquals(1, engine.getCompletedCount());
+        assertNull(engine.getTask());
+        assertTrue(Double.isNaN(engine.distanceToTaskMetres()));
+    }
+
+    @Test
+    public void skipReportsOldTask() {
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        assertFalse(engine.nextTask(true, 0));
+        engine.onFix(22.3, 114.17, 0);
+        assertTrue(engine.nextTask(true, 1000));
+        assertEquals("skipped", events.get(1));
+        assertEquals("generated", events.get(2));
+    }
+
+    @Test
+    public void trailCheckpointsAreReachedOnce() {
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        assertFalse(engine.startTrail(50, 0));
+        engine.setPosition(22.3, 114.17, 0);
+        engine.setTask(new GameTask(22.4, 114.17, 0));
+        assertTrue(engine.startTrail(50, 0));
+        assertEquals(50, engine.getCheckpointsRemaining());
+        GameTask checkpoint = engine.getCheckpoints()[7];
+        engine.onFix(checkpoint.getLatitude(), checkpoint.getLongitude(), 1000);
+        assertTrue(events.contains("checkpoint 7"));
+        assertTrue(engine.isCheckpointReached(7));
+        int reached = engine.getCheckpointsReached();
+        assertEquals(50 - reached, engine.getCheckpointsRemaining());
+        engine.onFix(checkpoint.getLatitude(), checkpoint.getLongitude(), 2000);
+        assertEquals(reached, engine.getCheckpointsReached());
+        //The single task is still the same
+        assertEquals(0, engine.getCompletedCount());
+    }
+
+    @Test
+    public void reachingLastCheckpointEndsTrail() {
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(1));
+        engine.setPosition(22.3, 114.17, 0);
+        engine.setTask(new GameTask(22.4, 114.17, 0));
+        assertTrue(engine.startTrail(1, 0));
+        GameTask checkpoint = engine.getCheckpoints()[0];
+        engine.onFix(checkpoint.getLatitude(), checkpoint.getLongitude(), 1000);
+        assertEquals("checkpoint 0", events.get(0));
+        assertEquals(1, engine.getCheckpointsReached());
+        assertEquals(0, engine.getCheckpointsRemaining());
+        assertEquals(0, engine.getCheckpoints().length);
+        //Later fixes find no trail
+        engine.onFix(checkpoint.getLatitude(), checkpoint.getLongitude(), 2000);
+        assertEquals(1, events.size());
+        assertTrue(engine.startTrail(2, 3000));
+        assertEquals(2, engine.getCheckpointsRemaining());
+    }
+}
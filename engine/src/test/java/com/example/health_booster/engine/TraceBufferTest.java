@@ -0,0 +1,56 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TraceBufferTest {
+
+    //Degrees of latitude for the given metres north
+    private static double north(double metres) {
+        return metres / Geofence.METRES_PER_DEGREE_LATITUDE;
+    }
+
+    @Test
+    public void dropsPointsWithinTolerance() {
+        TraceBuffer trace = new TraceBuffer(16, 5);
+        assertEquals(TraceBuffer.APPENDED, trace.add(0, 0));
+        assertEquals(TraceBuffer.IGNORED, trace.add(north(3), 0));
+        assertEquals(TraceBuffer.APPENDED, trace.add(north(10), 0));
+        assertEquals(2, trace.size());
+    }
+
+    @Test
+    public void extendsStraightSegments() {
+        TraceBuffer trace = new TraceBuffer(16, 5);
+        trace.add(0, 0);
+        trace.add(north(10), 0);
+        assertEquals(TraceBuffer.REPLACED, trace.add(north(20), 0));
+        assertEquals(TraceBuffer.REPLACED, trace.add(north(30), north(1)));
+        assertEquals(2, trace.size());
+        assertEquals(north(30), trace.getLatitude(1), 1e-12);
+
+        //Turning east keeps the corner
+        assertEquals(TraceBuffer.APPENDED, trace.add(north(30), north(30)));
+        assertEquals(3, trace.size());
+    }
+
+    @Test
+    public void overwritesOldestWhenFull() {
+        TraceBuffer trace = new TraceBuffer(3, 1);
+        //Zig-zag so no point is simplified away
+        for (int i = 0; i < 5; i++) {
+            trace.add(north(10 * i), i % 2 == 0 ? 0 : north(10));
+        }
+        assertEquals(3, trace.size());
+        assertEquals(north(20), trace.getLatitude(0), 1e-12);
+        assertEquals(north(40), trace.getLatitude(2), 1e-12);
+    }
+
+    @Test
+    public void offLineMetres() {
+        assertEquals(5, TraceBuffer.offLineMetres(0, 0, north(100), 0, north(50), north(5)), 0.01);
+        //Beyond the segment end the distance is to the end point
+        assertEquals(10, TraceBuffer.offLineMetres(0, 0, north(100), 0, north(110), 0), 0.01);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.health_booster.engine;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays walk.gpx, 30 fixes 5 s and 7 m apart walking north, through the engine as the app
+ * does with a replay location source.
+ */
+public class TraceReplayTest {
+
+    private int completions;
+    private long lastTimeMillis;
+
+    private final TaskEngine.Listener listener = new TaskEngine.Listener() {
+        @Override
+        public void onTaskCompleted(GameTask task) {
+            completions++;
+        }
+    };
+
+    private static FixTrace readWalk() throws IOException {
+        try (InputStream in = TraceReplayTest.class.getResourceAsStream("/walk.gpx"))
+        {
+            return FixTrace.readGpx(in);
+        }
+    }
+
+    @Test
+    public void gpxTrackIsRead() throws IOException {
+        FixTrace trace = readWalk();
+        assertEquals(30, trace.size());
+        assertEquals(22.3, trace.getLatitude(0), 1e-9);
+        assertEquals(114.17, trace.getLongitude(29), 1e-9);
+        assertEquals(FixTrace.parseTime("2020-11-02T08:15:00Z"), trace.getTimeMillis(0));
+        assertEquals(29 * 5000, trace.getDurationMillis());
+        assertEquals(2 * FixTrace.METRES_PER_HDOP, trace.getAccuracy(0), 0);
+    }
+
+    @Test
+    public void timesAreParsedWithoutJavaTime() {
+        assertEquals(0, FixTrace.parseTime("1970-01-01T00:00:00Z"));
+        assertEquals(1604304930250L, FixTrace.parseTime("2020-11-02T08:15:30.250Z"));
+        assertEquals(1604304930000L, FixTrace.parseTime("2020-11-02T16:15:30+08:00"));
+        assertEquals(951782400000L, FixTrace.parseTime("2000-02-29T00:00:00Z"));
+    }
+
+    @Test
+    public void csvMatchesGpx() throws IOException {
+        FixTrace trace = FixTrace.readCsv(new StringReader(
+                "latitude,longitude,timeMillis,accuracy\n22.3,114.17,1000,8\n22.3001,114.17,6000\n"));
+        assertEquals(2, trace.size());
+        assertEquals(8, trace.getAccuracy(0), 0);
+        assertEquals(0, trace.getAccuracy(1), 0);
+        assertEquals(5000, trace.getDurationMillis());
+    }
+
+    @Test(expected = IOException.class)
+    public void emptyTimeIsAnInvalidFix() throws IOException {
+        FixTrace.readCsv(new StringReader("22.3,114.17,1000,8\n22.3001,114.17, ,8\n"));
+    }
+
+    @Test
+    public void delaysAreShortenedBySpeed() throws IOException {
+        TraceReplay replay = new TraceReplay(readWalk(), 10);
+        replay.deliverNext((latitude, longitude, accuracyMetres, timeMillis) -> assertEquals(0, timeMillis), 0);
+        assertEquals(500, replay.getDelayToNextMillis());
+        replay.deliverNext((latitude, longitude, accuracyMetres, timeMillis) -> assertEquals(5000, timeMillis), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void speedAboveLimitIsRejected() throws IOException {
+        new TraceReplay(readWalk(), TraceReplay.MAX_SPEED * 2);
+    }
+
+    @Test
+    public void walkCompletesTaskOnTheWay() throws IOException, InterruptedException {
+        TaskEngine engine = new TaskEngine(listener, new RandomTaskGenerator(7));
+        engine.setLocationFilter(new LocationFilter());
+        engine.setPosition(22.3, 114.17, 0);
+        engine.setTask(new GameTask(22.3 + 140 / Geofence.METRES_PER_DEGREE_LATITUDE, 114.17, 0));
+        TraceReplay replay = new TraceReplay(readWalk(), TraceReplay.MAX_SPEED);
+        assertEquals(0, replay.getDelayToNextMillis());
+
+        long started = System.nanoTime();
+        replay.run((latitude, longitude, accuracyMetres, timeMillis) -> {
+            lastTimeMillis = timeMillis;
+            engine.onFix(latitude, longitude, accuracyMetres, timeMillis);
+        }, 1000);
+        long elapsedMillis = (System.nanoTime() - started) / 1000000;
+
+        assertFalse(replay.hasNext());
+        assertEquals(30, replay.getPosition());
+        assertEquals(1, completions);
+        assertEquals(1000 + 29 * 5000, lastTimeMillis);
+        //145 s of walking at 1000x, paced rather than delivered at once
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 140);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.health_booster.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Build-time converter from a CSV of "latitude,longitude" lines into the {@link PoiIndex} file
+ * the app bundles as an asset, run by the engine's poiIndex task.
+ */
+public class PoiIndexTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+        {
+            System.err.println("Usage: PoiIndexTool <points.csv> <poi.bin>");
+            System.exit(1);
+        }
+        double[] latitudes = new double[1024];
+        double[] longitudes = new double[1024];
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0])))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split(",");
+                if (fields.length < 2 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                if (count == latitudes.length)
+                {
+                    latitudes = Arrays.copyOf(latitudes, count * 2);
+                    longitudes = Arrays.copyOf(longitudes, count * 2);
+                }
+                latitudes[count] = Double.parseDouble(fields[0].trim());
+                longitudes[count] = Double.parseDouble(fields[1].trim());
+                count++;
+            }
+        }
+        PoiIndex.write(new File(args[1]), latitudes, longitudes, count, PoiIndex.DEFAULT_CELL_DEGREES);
+        System.out.println(count + " points written to " + args[1]);
+    }
+}